@@ -21,9 +21,15 @@ if not exist "!JAVA_EXE!" (
 :: Set classpath
 set "CLASSPATH=!APP_DIR!\ctippopup.jar;!APP_DIR!\jtapi.jar"
 
-:: Launch the application
+:: AppCDS archive: created on first run, then reused to cut class loading at login.
+:: Kept under LocalAppData because the install folder is read-only for normal users.
+set "CDS_DIR=%LOCALAPPDATA%\LKQ\CTIPopup"
+if not exist "!CDS_DIR!" mkdir "!CDS_DIR!"
+set "CDS_OPTS=-XX:+AutoCreateSharedArchive -XX:SharedArchiveFile=!CDS_DIR!\ctippopup.jsa"
+
+:: Launch the application (--tray: start minimised to tray and connect with saved settings)
 cd /d "!APP_DIR!"
-"!JAVA_EXE!" -Xmx512m -cp "!CLASSPATH!" JTAPIGui
+"!JAVA_EXE!" -Xmx512m !CDS_OPTS! -cp "!CLASSPATH!" JTAPIGui --tray
 
 :: If we get here, the Java process has ended
 exit /b %ERRORLEVEL%
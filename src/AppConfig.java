@@ -0,0 +1,185 @@
+import java.util.*;
+
+// Typed, immutable snapshot of the settings shared by JTAPIGui and JTAPICallerInfo.main.
+// Backed by config.properties; the original keys (username, password, cucmHost, phone) are kept
+// so existing files load unchanged. List values are comma separated.
+public final class AppConfig {
+    public static final String DEFAULT_HOST = "ccmaur1vpub.lkqvoice.com";
+    public static final String DEFAULT_URL_TEMPLATE = "https://salesassistant.lkqcorp.com/customers/{number}";
+    public static final String DEFAULT_TRIGGER = "CONNECTED";
+
+    private final List<String> providerHosts;
+    private final String username;
+    private final String password;
+    private final List<String> monitoredAddresses;
+    private final List<String> triggers;
+    private final String urlTemplate;
+    private final String rules;           // stage=action rules; empty = OPEN on each trigger
+    private final TriggerRules triggerRules;
+    private final String dialPlan;        // caller number -> E.164 rules; empty = numbers used as reported
+    private final NumberNormalizer numberNormalizer;
+    private final int maxPopsPerMinute;   // 0 = unlimited
+    private final int popLedgerHours;     // remember popped calls across restarts this long; 0 = off
+    private final int logRetentionDays;
+    private final int queueCapacity;      // bound for in-memory event/delivery queues
+    private final int toastSlots;         // pooled notification windows (max concurrent toasts)
+    private final int toastSeconds;
+    private final List<String> webhooks;  // outbound JSON endpoints for pop / call events
+    private final int webhookBatchSize;
+    private final int webhookBatchMillis;
+    private final int statsPort;          // localhost HTTP port for call analytics; 0 = off
+    private final int wallboardPort;      // HTTP port for the supervisor wallboard; 0 = off
+    private final String wallboardBind;   // address the wallboard listens on; default loopback
+    private final int diagnosticsMinutes; // background JFR / journal window for diagnostics bundles; 0 = on demand only
+    private final boolean callStats;      // feed CallAnalytics (needs every call stage)
+    private final boolean logAllEvents;   // log event types no rule or consumer needs (debugging)
+    private final EventLog.Level consoleLevel;
+    private final EventLog.Level logLevel;  // call-events.log
+    private final int logSampleRate;      // max lines/s per high-rate log category; 0 = unlimited
+    private final boolean rememberMe;
+
+    // Values are read from clear-text properties; ConfigStore takes care of secret decryption.
+    public AppConfig(Properties p) {
+        this.providerHosts = splitList(p.getProperty("cucmHost", DEFAULT_HOST), false);
+        this.username = p.getProperty("username", "").trim();
+        this.password = p.getProperty("password", "");
+        this.monitoredAddresses = splitList(p.getProperty("phone", ""), false);
+        List<String> t = splitList(p.getProperty("trigger", DEFAULT_TRIGGER), true);
+        this.triggers = t.isEmpty() ? Collections.singletonList(DEFAULT_TRIGGER) : t;
+        this.urlTemplate = p.getProperty("urlTemplate", DEFAULT_URL_TEMPLATE).trim();
+        this.rules = p.getProperty("rules", "").trim();
+        this.triggerRules = rules.isEmpty() ? TriggerRules.fromTriggers(triggers) : TriggerRules.parse(rules);
+        this.dialPlan = p.getProperty("dialPlan", "").trim();
+        this.numberNormalizer = NumberNormalizer.parse(dialPlan);
+        this.maxPopsPerMinute = intProp(p, "maxPopsPerMinute", 0, 0);
+        this.popLedgerHours = intProp(p, "popLedgerHours", 12, 0);
+        this.logRetentionDays = intProp(p, "logRetentionDays", 14, 1);
+        this.queueCapacity = intProp(p, "queueCapacity", 1000, 1);
+        this.toastSlots = intProp(p, "toastSlots", 4, 1);
+        this.toastSeconds = intProp(p, "toastSeconds", 8, 1);
+        this.webhooks = splitList(p.getProperty("webhooks", ""), false);
+        this.webhookBatchSize = intProp(p, "webhookBatchSize", 50, 1);
+        this.webhookBatchMillis = intProp(p, "webhookBatchMillis", 500, 0);
+        this.statsPort = intProp(p, "statsPort", 0, 0);
+        this.wallboardPort = intProp(p, "wallboardPort", 0, 0);
+        this.wallboardBind = p.getProperty("wallboardBind", "127.0.0.1").trim();
+        this.diagnosticsMinutes = intProp(p, "diagnosticsMinutes", 0, 0);
+        this.callStats = Boolean.parseBoolean(p.getProperty("callStats", "true"));
+        this.logAllEvents = Boolean.parseBoolean(p.getProperty("logAllEvents", "false"));
+        this.consoleLevel = EventLog.parseLevel(p.getProperty("consoleLevel"), EventLog.Level.INFO);
+        this.logLevel = EventLog.parseLevel(p.getProperty("logLevel"), EventLog.Level.INFO);
+        this.logSampleRate = intProp(p, "logSampleRate", 20, 0);
+        this.rememberMe = Boolean.parseBoolean(p.getProperty("rememberMe",
+            String.valueOf(p.containsKey("username") || p.containsKey("password") || p.containsKey("cucmHost") || p.containsKey("phone"))));
+    }
+
+    public static AppConfig defaults() {
+        return new AppConfig(new Properties());
+    }
+
+    public Properties toProperties() {
+        Properties p = new Properties();
+        p.setProperty("cucmHost", String.join(",", providerHosts));
+        p.setProperty("username", username);
+        p.setProperty("password", password);
+        p.setProperty("phone", String.join(",", monitoredAddresses));
+        p.setProperty("trigger", String.join(",", triggers));
+        p.setProperty("urlTemplate", urlTemplate);
+        p.setProperty("rules", rules);
+        p.setProperty("dialPlan", dialPlan);
+        p.setProperty("maxPopsPerMinute", String.valueOf(maxPopsPerMinute));
+        p.setProperty("popLedgerHours", String.valueOf(popLedgerHours));
+        p.setProperty("logRetentionDays", String.valueOf(logRetentionDays));
+        p.setProperty("queueCapacity", String.valueOf(queueCapacity));
+        p.setProperty("toastSlots", String.valueOf(toastSlots));
+        p.setProperty("toastSeconds", String.valueOf(toastSeconds));
+        p.setProperty("webhooks", String.join(",", webhooks));
+        p.setProperty("webhookBatchSize", String.valueOf(webhookBatchSize));
+        p.setProperty("webhookBatchMillis", String.valueOf(webhookBatchMillis));
+        p.setProperty("statsPort", String.valueOf(statsPort));
+        p.setProperty("wallboardPort", String.valueOf(wallboardPort));
+        p.setProperty("wallboardBind", wallboardBind);
+        p.setProperty("diagnosticsMinutes", String.valueOf(diagnosticsMinutes));
+        p.setProperty("callStats", String.valueOf(callStats));
+        p.setProperty("logAllEvents", String.valueOf(logAllEvents));
+        p.setProperty("consoleLevel", consoleLevel.name());
+        p.setProperty("logLevel", logLevel.name());
+        p.setProperty("logSampleRate", String.valueOf(logSampleRate));
+        p.setProperty("rememberMe", String.valueOf(rememberMe));
+        return p;
+    }
+
+    // Copy with a single property replaced, e.g. cfg.with("trigger", "RINGING").
+    public AppConfig with(String key, String value) {
+        Properties p = toProperties();
+        p.setProperty(key, value == null ? "" : value);
+        return new AppConfig(p);
+    }
+
+    // Cisco JTAPI accepts a comma separated list of CTI Manager hosts for failover.
+    public String providerString() {
+        return String.join(",", providerHosts) + ";login=" + username + ";passwd=" + password;
+    }
+
+    public List<String> getProviderHosts() { return providerHosts; }
+    public String getUsername() { return username; }
+    public String getPassword() { return password; }
+    public List<String> getMonitoredAddresses() { return monitoredAddresses; }
+    public List<String> getTriggers() { return triggers; }
+    public String getUrlTemplate() { return urlTemplate; }
+    public String getRules() { return rules; }
+    public TriggerRules getTriggerRules() { return triggerRules; }
+    public String getDialPlan() { return dialPlan; }
+    public NumberNormalizer getNumberNormalizer() { return numberNormalizer; }
+    public int getMaxPopsPerMinute() { return maxPopsPerMinute; }
+    public int getPopLedgerHours() { return popLedgerHours; }
+    public int getLogRetentionDays() { return logRetentionDays; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public int getToastSlots() { return toastSlots; }
+    public int getToastSeconds() { return toastSeconds; }
+    public List<String> getWebhooks() { return webhooks; }
+    public int getWebhookBatchSize() { return webhookBatchSize; }
+    public int getWebhookBatchMillis() { return webhookBatchMillis; }
+    public int getStatsPort() { return statsPort; }
+    public int getWallboardPort() { return wallboardPort; }
+    public String getWallboardBind() { return wallboardBind; }
+    public int getDiagnosticsMinutes() { return diagnosticsMinutes; }
+    public boolean isCallStatsEnabled() { return callStats; }
+    public boolean isLogAllEvents() { return logAllEvents; }
+    public EventLog.Level getConsoleLevel() { return consoleLevel; }
+    public EventLog.Level getLogLevel() { return logLevel; }
+    public int getLogSampleRate() { return logSampleRate; }
+    public boolean isRememberMe() { return rememberMe; }
+
+    public boolean isMonitoringAll() {
+        return monitoredAddresses.size() == 1 && "ALL".equalsIgnoreCase(monitoredAddresses.get(0));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AppConfig && toProperties().equals(((AppConfig) o).toProperties());
+    }
+
+    @Override
+    public int hashCode() {
+        return toProperties().hashCode();
+    }
+
+    private static List<String> splitList(String raw, boolean upper) {
+        List<String> out = new ArrayList<>();
+        if (raw == null) return out;
+        for (String s : raw.split(",")) {
+            String v = s.trim();
+            if (!v.isEmpty()) out.add(upper ? v.toUpperCase() : v);
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    private static int intProp(Properties p, String key, int def, int min) {
+        try {
+            return Math.max(min, Integer.parseInt(p.getProperty(key, String.valueOf(def)).trim()));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+}
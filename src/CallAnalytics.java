@@ -0,0 +1,303 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+// Streaming per-address call statistics fed from callChangedEvent: calls offered, answered, abandoned
+// (offered, never answered), pops sent and a ring-time histogram over rolling 1 minute, 15 minute and
+// 1 hour windows.
+//
+// Each address owns one int[] of counters laid out as fixed ring buffers: 6 ten-second buckets for the
+// 1 minute window and 60 one-minute buckets for the 15 minute / 1 hour windows. A bucket is reset lazily
+// when time moves past it, so recording a stage is a few array writes with no allocation and memory per
+// address is constant (~4 KB) however many calls arrive.
+//
+// With statsPort set, GET http://127.0.0.1:<statsPort>/stats[?address=1234] returns the windows as JSON.
+public final class CallAnalytics {
+    public enum Window {
+        M1("1m", 6, 10_000L), M15("15m", 15, 60_000L), H1("1h", 60, 60_000L);
+
+        final String label;
+        final int buckets;     // buckets summed for this window
+        final long bucketMillis;
+
+        Window(String label, int buckets, long bucketMillis) {
+            this.label = label;
+            this.buckets = buckets;
+            this.bucketMillis = bucketMillis;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    // Ring-time histogram upper bounds in seconds; the last bin is open ended.
+    static final int[] RING_BOUNDS = {2, 5, 10, 20, 30, 60, 120};
+    static final int RING_BINS = RING_BOUNDS.length + 1;
+
+    private static final int OFFERED = 0, ANSWERED = 1, ABANDONED = 2, POPS = 3, RING_SUM_MS = 4, RING = 5;
+    private static final int METRICS = RING + RING_BINS;
+    private static final int SEC_BUCKETS = 6;      // 10 s each
+    private static final int MIN_BUCKETS = 60;     // 1 min each
+    private static final int MAX_ADDRESSES = 20_000;
+    private static final String OVERFLOW = "(other)";
+
+    private static final Map<String, Counters> byAddress = new ConcurrentHashMap<>();
+    private static HttpServer server;  // guarded by class lock
+    private static int serverPort;
+
+    private CallAnalytics() {}
+
+    public static void offered(String address, long now) {
+        counters(address).add(now, OFFERED, 1);
+    }
+
+    // ringMillis < 0 when the time the call started ringing is unknown (not counted in the histogram).
+    public static void answered(String address, long ringMillis, long now) {
+        Counters c = counters(address);
+        synchronized (c) {
+            c.add(now, ANSWERED, 1);
+            if (ringMillis >= 0) {
+                c.add(now, RING_SUM_MS, (int) Math.min(Integer.MAX_VALUE, ringMillis));
+                c.add(now, RING + ringBin(ringMillis), 1);
+            }
+        }
+    }
+
+    public static void abandoned(String address, long now) {
+        counters(address).add(now, ABANDONED, 1);
+    }
+
+    public static void popped(String address, long now) {
+        counters(address).add(now, POPS, 1);
+    }
+
+    // Start/stop the local stats endpoint to match the config; safe to call again on reload.
+    public static synchronized void configure(AppConfig cfg) {
+        int port = cfg.getStatsPort();
+        if (server != null && port == serverPort) return;
+        stopHttp();
+        if (port <= 0) return;
+        try {
+            // loopback only: the numbers are per-agent call data, not for the network
+            HttpServer s = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            s.createContext("/stats", CallAnalytics::handleStats);
+            s.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            s.start();
+            server = s;
+            serverPort = port;
+        } catch (IOException e) {
+            EventLog.warn("Call stats endpoint not started on port {}: {}", port, e.getMessage());
+        }
+    }
+
+    public static synchronized void stopHttp() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            serverPort = 0;
+        }
+    }
+
+    private static void handleStats(HttpExchange ex) throws IOException {
+        try {
+            if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            String address = null;
+            String query = ex.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String kv : query.split("&")) {
+                    if (kv.startsWith("address=")) address = URLDecoder.decode(kv.substring(8), StandardCharsets.UTF_8);
+                }
+            }
+            byte[] body = toJson(address).getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    public static List<String> addresses() {
+        List<String> out = new ArrayList<>(byAddress.keySet());
+        Collections.sort(out);
+        return out;
+    }
+
+    public static void reset() {
+        byAddress.clear();
+    }
+
+    // Totals for one address over a window; null if nothing was ever recorded for it.
+    public static Snapshot snapshot(String address, Window w) {
+        Counters c = byAddress.get(key(address));
+        if (c == null) return null;
+        long[] sums = new long[METRICS];
+        c.sum(System.currentTimeMillis(), w, sums);
+        return new Snapshot(key(address), w, sums);
+    }
+
+    // One line per address and window, for the GUI and the CLI exit summary.
+    public static List<String> summary() {
+        List<String> out = new ArrayList<>();
+        for (String a : addresses()) {
+            StringBuilder sb = new StringBuilder(a);
+            for (Window w : Window.values()) {
+                Snapshot s = snapshot(a, w);
+                if (s != null) sb.append("  ").append(w.label).append(": ").append(s);
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+
+    // {"address":{"1m":{...},"15m":{...},"1h":{...}},...}; a null/empty filter returns every address.
+    public static String toJson(String addressFilter) {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (String a : addresses()) {
+            if (addressFilter != null && !addressFilter.isEmpty() && !a.equalsIgnoreCase(addressFilter)) continue;
+            if (!first) sb.append(',');
+            first = false;
+            WebhookDispatcher.quote(sb, a);
+            sb.append(":{");
+            boolean firstWindow = true;
+            for (Window w : Window.values()) {
+                Snapshot s = snapshot(a, w);
+                if (s == null) continue;
+                if (!firstWindow) sb.append(',');
+                firstWindow = false;
+                sb.append('"').append(w.label).append("\":").append(s.toJson());
+            }
+            sb.append('}');
+        }
+        return sb.append('}').toString();
+    }
+
+    static int ringBin(long ringMillis) {
+        long secs = ringMillis / 1000;
+        for (int i = 0; i < RING_BOUNDS.length; i++) {
+            if (secs < RING_BOUNDS[i]) return i;
+        }
+        return RING_BOUNDS.length;
+    }
+
+    private static String key(String address) {
+        return address == null || address.isEmpty() ? "(unknown)" : address;
+    }
+
+    private static Counters counters(String address) {
+        String k = key(address);
+        Counters c = byAddress.get(k);
+        if (c != null) return c;
+        // bounded: past MAX_ADDRESSES new addresses share one overflow row
+        if (byAddress.size() >= MAX_ADDRESSES) k = OVERFLOW;
+        return byAddress.computeIfAbsent(k, x -> new Counters());
+    }
+
+    public static final class Snapshot {
+        public final String address;
+        public final Window window;
+        public final long offered;
+        public final long answered;
+        public final long abandoned;
+        public final long pops;
+        public final long avgRingMillis;
+        public final long[] ringHistogram;
+
+        Snapshot(String address, Window window, long[] sums) {
+            this.address = address;
+            this.window = window;
+            this.offered = sums[OFFERED];
+            this.answered = sums[ANSWERED];
+            this.abandoned = sums[ABANDONED];
+            this.pops = sums[POPS];
+            long timed = 0;
+            this.ringHistogram = Arrays.copyOfRange(sums, RING, RING + RING_BINS);
+            for (long n : ringHistogram) timed += n;
+            this.avgRingMillis = timed == 0 ? 0 : sums[RING_SUM_MS] / timed;
+        }
+
+        String toJson() {
+            StringBuilder sb = new StringBuilder("{\"offered\":").append(offered)
+                .append(",\"answered\":").append(answered)
+                .append(",\"abandoned\":").append(abandoned)
+                .append(",\"pops\":").append(pops)
+                .append(",\"avgRingMs\":").append(avgRingMillis)
+                .append(",\"ringHistogram\":{");
+            for (int i = 0; i < RING_BINS; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('"').append(binLabel(i)).append("\":").append(ringHistogram[i]);
+            }
+            return sb.append("}}").toString();
+        }
+
+        @Override
+        public String toString() {
+            return "offered=" + offered + " answered=" + answered + " abandoned=" + abandoned
+                + " pops=" + pops + " avgRing=" + avgRingMillis + "ms";
+        }
+    }
+
+    static String binLabel(int bin) {
+        if (bin == RING_BOUNDS.length) return ">=" + RING_BOUNDS[bin - 1] + "s";
+        return "<" + RING_BOUNDS[bin] + "s";
+    }
+
+    // Two rings of buckets in one array: [0, SEC_BUCKETS) are 10 s buckets, the rest 1 min buckets.
+    // epoch[] holds the bucket number each slot currently counts; a stale slot is zeroed before reuse.
+    private static final class Counters {
+        final int[] counts = new int[(SEC_BUCKETS + MIN_BUCKETS) * METRICS];
+        final long[] epoch = new long[SEC_BUCKETS + MIN_BUCKETS];
+
+        Counters() {
+            Arrays.fill(epoch, -1);
+        }
+
+        synchronized void add(long now, int metric, int n) {
+            int s = slot(now / Window.M1.bucketMillis, 0, SEC_BUCKETS);
+            if (s >= 0) counts[s * METRICS + metric] += n;
+            s = slot(now / Window.H1.bucketMillis, SEC_BUCKETS, MIN_BUCKETS);
+            if (s >= 0) counts[s * METRICS + metric] += n;
+        }
+
+        // -1 for a timestamp older than the ring covers (a late event must not wipe a newer bucket)
+        private int slot(long bucket, int base, int size) {
+            int s = base + (int) (bucket % size);
+            if (epoch[s] > bucket) return -1;
+            if (epoch[s] != bucket) {
+                epoch[s] = bucket;
+                Arrays.fill(counts, s * METRICS, (s + 1) * METRICS, 0);
+            }
+            return s;
+        }
+
+        synchronized void sum(long now, Window w, long[] out) {
+            boolean seconds = w == Window.M1;
+            int base = seconds ? 0 : SEC_BUCKETS;
+            int size = seconds ? SEC_BUCKETS : MIN_BUCKETS;
+            long current = now / w.bucketMillis;
+            for (int i = 0; i < size; i++) {
+                long b = epoch[base + i];
+                // only buckets inside the window (the current one plus the previous buckets-1)
+                if (b < 0 || b > current || current - b >= w.buckets) continue;
+                int off = (base + i) * METRICS;
+                for (int m = 0; m < METRICS; m++) out[m] += counts[off + m];
+            }
+        }
+    }
+}
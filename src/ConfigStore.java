@@ -0,0 +1,144 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Loads, saves and watches config.properties. All writes go through a single background thread so the
+// EDT never blocks on disk; external edits to the file are picked up and pushed to listeners.
+public final class ConfigStore {
+    public static final Path DEFAULT_DIR = Paths.get(System.getProperty("user.home"), ".jtapi_config");
+    public static final Path DEFAULT_FILE = DEFAULT_DIR.resolve("config.properties");
+
+    private final Path file;
+    private final SecretCipher cipher;
+    private final List<Consumer<AppConfig>> listeners = new CopyOnWriteArrayList<>();
+    // single virtual thread keeps saves in order
+    private final ExecutorService io = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("config-io").factory());
+    private volatile AppConfig current = AppConfig.defaults();
+    // ENC(...) password that failed to decrypt; written back unchanged until a new password is entered,
+    // so restoring secret.key still recovers it
+    private volatile String undecryptable;
+    private Thread watcher;
+
+    public ConfigStore(Path file) {
+        this.file = file;
+        this.cipher = new SecretCipher(file.resolveSibling("secret.key"));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public AppConfig get() {
+        return current;
+    }
+
+    public void addListener(Consumer<AppConfig> l) {
+        listeners.add(l);
+    }
+
+    // Blocking load; call from main/startup threads, not the EDT.
+    public AppConfig load() throws IOException {
+        if (!Files.exists(file)) return current;
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        String stored = props.getProperty("password");
+        String failed = null;
+        if (stored != null) {
+            try {
+                props.setProperty("password", cipher.decrypt(stored));
+            } catch (IOException e) {
+                // only the password is lost; every other setting still loads (warned once, not on every reload)
+                if (!stored.equals(undecryptable)) EventLog.warn("Saved password could not be decrypted, enter it again: {}", e.getMessage());
+                props.setProperty("password", "");
+                failed = stored;
+            }
+        }
+        undecryptable = failed;
+        current = new AppConfig(props);
+        // Upgrade files written by older versions that kept the password in clear text
+        if (stored != null && !stored.isEmpty() && !SecretCipher.isEncrypted(stored)) save(current);
+        return current;
+    }
+
+    public void save(AppConfig cfg) {
+        current = cfg;
+        io.execute(() -> {
+            try {
+                write(cfg);
+            } catch (IOException e) {
+                EventLog.warn("Failed to save settings: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void write(AppConfig cfg) throws IOException {
+        Properties props = cfg.toProperties();
+        String keep = undecryptable;
+        if (cfg.getPassword().isEmpty() && keep != null) {
+            props.setProperty("password", keep);
+        } else {
+            props.setProperty("password", cipher.encrypt(cfg.getPassword()));
+            undecryptable = null;
+        }
+        Files.createDirectories(file.getParent());
+        // write to a temp file and move so the watcher never sees a half-written config
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, "JTAPI GUI Settings");
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Watch the config directory and notify listeners when the file content actually changes.
+    public synchronized void startWatching() {
+        if (watcher != null) return;
+        watcher = TaskScope.startVirtual("config-watcher", () -> {
+            Path dir = file.getParent();
+            try {
+                Files.createDirectories(dir);
+                WatchService ws = dir.getFileSystem().newWatchService();
+                dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey key = ws.take();
+                    boolean touched = false;
+                    for (WatchEvent<?> ev : key.pollEvents()) {
+                        Object ctx = ev.context();
+                        if (ctx instanceof Path && file.getFileName().equals(ctx)) touched = true;
+                    }
+                    key.reset();
+                    if (touched) reload();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                EventLog.warn("Config watcher stopped: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void reload() {
+        AppConfig before = current;
+        try {
+            AppConfig after = load();
+            // our own saves land here too; only changed content is pushed out
+            if (!after.equals(before)) {
+                for (Consumer<AppConfig> l : listeners) {
+                    try { l.accept(after); } catch (Exception ignore) {}
+                }
+            }
+        } catch (IOException e) {
+            EventLog.warn("Failed to reload settings: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,842 @@
+import javax.telephony.*;
+import javax.telephony.capabilities.*;
+import javax.telephony.events.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process stand-in for CUCM, for load testing without a production cluster. A provider string starting
+// with "sim:" (CUCM Host field in the GUI, providerString for the CLI) gets a simulated javax.telephony
+// Provider whose Addresses accept addCallObserver like the Cisco one, e.g.
+//
+//   sim:addresses=2000,rate=50,hunt=0.2,transfer=0.05,outageEvery=300
+//
+// Calls arrive at `rate` per second (Poisson) on subscribed addresses. They ring for ringMin..ringMax ms,
+// are answered with probability `answer` (otherwise abandoned) and last talkMin..talkMax ms. A fraction
+// `hunt` rings huntSize consecutive lines at once, and a fraction `transfer` is blind-transferred to another
+// line. Every outageEvery seconds the provider goes out of service for outageSeconds and in-flight calls
+// are lost. The event sequence follows the JTAPI core model: the caller's connection connects at once, the
+// called lines go in-progress/alerting/ringing, and new observers on a transfer get a snapshot.
+//
+// Like Cisco JTAPI, each observer gets its events in order on one of `threads` delivery threads. Pops for
+// simulated calls are counted here instead of opening a browser. Every `report` seconds a line with pops/s,
+// missed pops (the call reached the `expect` stage but never popped), duplicate pops and event-to-pop
+// latency (measured from when the triggering event was emitted) is printed.
+public final class CtiSimulator {
+    static final String PREFIX = "sim:";
+    private static final long MISSED_GRACE_NANOS = TimeUnit.SECONDS.toNanos(5); // pops are async
+    private static final List<SimProvider> running = new CopyOnWriteArrayList<>();
+
+    private CtiSimulator() {}
+
+    public static boolean isSimulator(String providerString) {
+        return providerString != null && providerString.trim().regionMatches(true, 0, PREFIX, 0, PREFIX.length());
+    }
+
+    public static Provider getProvider(String providerString) {
+        SimProvider p = new SimProvider(new Options(providerString.trim().substring(PREFIX.length())));
+        running.add(p);
+        p.start();
+        return p;
+    }
+
+    // Installed on every JTAPICallerInfo added to a simulated address: pops are counted here instead of
+    // opening a browser, and prefetches never reach the real CRM.
+    static final JTAPICallerInfo.PopTarget POPS = new JTAPICallerInfo.PopTarget() {
+        @Override
+        public String open(CallEv trigger, String url) {
+            SimEv ev = (SimEv) trigger;
+            ev.call.provider.popped(ev, System.nanoTime());
+            return "simulated";
+        }
+
+        @Override
+        public void prefetch(CallEv trigger, String url, TaskScope scope) {}
+    };
+
+    // Latest report line per running simulated provider.
+    public static List<String> stats() {
+        List<String> out = new ArrayList<>();
+        for (SimProvider p : running) out.add(p.lastReport);
+        return out;
+    }
+
+    // ---- options ----
+
+    static final class Options {
+        int addresses = 1000;
+        int firstDn = 1000;
+        double rate = 5;           // call arrivals per second
+        double hunt = 0.1;
+        int huntSize = 4;
+        double answer = 0.85;
+        double transfer = 0.05;
+        int ringMin = 1000, ringMax = 6000;
+        int talkMin = 2000, talkMax = 20000;
+        int outageEvery = 0, outageSeconds = 10;
+        int threads = 4;
+        int callers = 5000;        // distinct caller numbers (repeat callers exercise caches)
+        int report = 5;
+        int expect = 2;            // stage rank a call must reach to expect a pop: CREATED 0, RINGING 1, CONNECTED 2
+        long seed = System.nanoTime();
+
+        Options(String spec) {
+            for (String kv : spec.split("[,;]")) {
+                int eq = kv.indexOf('=');
+                if (eq < 0) continue;
+                String k = kv.substring(0, eq).trim();
+                String v = kv.substring(eq + 1).trim();
+                try {
+                    switch (k) {
+                        case "addresses": addresses = Math.max(1, Integer.parseInt(v)); break;
+                        case "first": firstDn = Integer.parseInt(v); break;
+                        case "rate": rate = Double.parseDouble(v); break;
+                        case "hunt": hunt = Double.parseDouble(v); break;
+                        case "huntSize": huntSize = Math.max(1, Integer.parseInt(v)); break;
+                        case "answer": answer = Double.parseDouble(v); break;
+                        case "transfer": transfer = Double.parseDouble(v); break;
+                        case "ringMin": ringMin = Integer.parseInt(v); break;
+                        case "ringMax": ringMax = Integer.parseInt(v); break;
+                        case "talkMin": talkMin = Integer.parseInt(v); break;
+                        case "talkMax": talkMax = Integer.parseInt(v); break;
+                        case "outageEvery": outageEvery = Integer.parseInt(v); break;
+                        case "outageSeconds": outageSeconds = Integer.parseInt(v); break;
+                        case "threads": threads = Math.max(1, Integer.parseInt(v)); break;
+                        case "callers": callers = Math.max(1, Integer.parseInt(v)); break;
+                        case "report": report = Math.max(1, Integer.parseInt(v)); break;
+                        case "expect": expect = stageRank(v.toUpperCase()); break;
+                        case "seed": seed = Long.parseLong(v); break;
+                        case "login": case "passwd": break; // appended by AppConfig.providerString()
+                        default: EventLog.warn("Ignoring unknown simulator option: {}", k);
+                    }
+                } catch (NumberFormatException e) {
+                    EventLog.warn("Ignoring bad simulator option: {}", kv.trim());
+                }
+            }
+        }
+
+        private static int stageRank(String stage) {
+            switch (stage) {
+                case "CREATED": return 0;
+                case "ALERTING": case "RINGING": return 1;
+                case "CONNECTED": return 2;
+                default: return Integer.MAX_VALUE; // NONE: no call is expected to pop
+            }
+        }
+    }
+
+    // ---- statistics ----
+
+    // Millisecond latency histogram (last bucket = 10 s and above) plus counters; guarded by the instance lock.
+    private static final class Latency {
+        final long[] buckets = new long[10_001];
+        long count;
+        long maxMicros;
+
+        void add(long nanos) {
+            long ms = nanos / 1_000_000L;
+            buckets[(int) Math.min(buckets.length - 1, Math.max(0, ms))]++;
+            count++;
+            maxMicros = Math.max(maxMicros, nanos / 1000);
+        }
+
+        long percentile(double p) {
+            if (count == 0) return 0;
+            long target = (long) Math.ceil(count * p);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) return i;
+            }
+            return buckets.length - 1;
+        }
+
+        String describe() {
+            return "p50=" + percentile(0.50) + "ms p99=" + percentile(0.99) + "ms max=" + (maxMicros / 1000) + "ms";
+        }
+    }
+
+    // ---- provider ----
+
+    static final class SimProvider implements Provider {
+        final Options opts;
+        final SimAddress[] addresses;
+        final Map<String, SimAddress> byName = new HashMap<>();
+        final List<SimAddress> observed = new CopyOnWriteArrayList<>(); // addresses with at least one observer
+        final Set<SimCall> active = ConcurrentHashMap.newKeySet();
+        final Queue<SimCall> finishing = new ConcurrentLinkedQueue<>();
+        final Random rng;        // clock thread only
+        final ScheduledExecutorService clock;
+        final Delivery[] delivery;
+        final AtomicLong callSeq = new AtomicLong();
+        volatile int state = IN_SERVICE;
+        volatile String lastReport = "sim: starting";
+
+        // counters (clock thread) and pop statistics (guarded by this)
+        long calls, answered, abandoned, transfers, lost, missed;
+        long pops, duplicates, popsAtLastReport;
+        final Latency interval = new Latency();
+        final Latency total = new Latency();
+        private final long startedNanos = System.nanoTime();
+        private long lastReportNanos = startedNanos;
+
+        SimProvider(Options opts) {
+            this.opts = opts;
+            this.rng = new Random(opts.seed);
+            this.addresses = new SimAddress[opts.addresses];
+            for (int i = 0; i < opts.addresses; i++) {
+                SimAddress a = new SimAddress(this, String.valueOf(opts.firstDn + i), true);
+                addresses[i] = a;
+                byName.put(a.name, a);
+            }
+            this.clock = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sim-clock");
+                t.setDaemon(true);
+                return t;
+            });
+            this.delivery = new Delivery[opts.threads];
+            for (int i = 0; i < delivery.length; i++) delivery[i] = new Delivery("sim-events-" + i);
+        }
+
+        void start() {
+            for (Delivery d : delivery) d.start();
+            scheduleArrival();
+            clock.scheduleAtFixedRate(this::sweep, 1, 1, TimeUnit.SECONDS);
+            clock.scheduleAtFixedRate(this::report, opts.report, opts.report, TimeUnit.SECONDS);
+            if (opts.outageEvery > 0) {
+                clock.scheduleAtFixedRate(this::outage, opts.outageEvery, opts.outageEvery, TimeUnit.SECONDS);
+            }
+            EventLog.log(EventLog.Level.INFO, "Simulated CTI provider: {} addresses from {}, {} calls/s, {} delivery threads",
+                opts.addresses, opts.firstDn, opts.rate, opts.threads);
+        }
+
+        // ---- call generation (clock thread) ----
+
+        private void scheduleArrival() {
+            if (opts.rate <= 0 || state == SHUTDOWN) return;
+            double secs = -Math.log(1 - rng.nextDouble()) / opts.rate;
+            clock.schedule(() -> {
+                try {
+                    if (state == IN_SERVICE) startCall();
+                } catch (Exception e) {
+                    EventLog.warn("sim: call generation failed: {}", e);
+                }
+                scheduleArrival();
+            }, (long) (secs * 1_000_000_000L), TimeUnit.NANOSECONDS);
+        }
+
+        private void startCall() {
+            if (observed.isEmpty()) return; // nobody listening: traffic would never reach the app
+            SimAddress target = observed.get(rng.nextInt(observed.size()));
+            String callerNumber = String.valueOf(96170000000L + rng.nextInt(opts.callers));
+            SimCall call = new SimCall(this, callSeq.incrementAndGet());
+            SimConnection callerConn = call.addConnection(new SimAddress(this, callerNumber, false));
+            List<SimConnection> ringing = new ArrayList<>();
+            int fanOut = rng.nextDouble() < opts.hunt ? opts.huntSize : 1;
+            int base = Integer.parseInt(target.name) - opts.firstDn;
+            for (int i = 0; i < fanOut && i < addresses.length; i++) {
+                ringing.add(call.addConnection(addresses[(base + i) % addresses.length]));
+            }
+            active.add(call);
+            calls++;
+
+            List<SimEv> starting = new ArrayList<>();
+            starting.add(new CallActiveEvImpl(call, Ev.META_CALL_STARTING));
+            starting.add(connEv(ConnCreatedEv.ID, callerConn, Connection.IDLE, Ev.META_CALL_STARTING));
+            starting.add(connEv(ConnConnectedEv.ID, callerConn, Connection.CONNECTED, Ev.META_CALL_STARTING));
+            for (SimConnection c : ringing) {
+                starting.add(connEv(ConnCreatedEv.ID, c, Connection.IDLE, Ev.META_CALL_STARTING));
+                starting.add(connEv(ConnInProgressEv.ID, c, Connection.INPROGRESS, Ev.META_CALL_STARTING));
+            }
+            call.join(ringing);
+            call.reached(0, ringing);
+            emit(call, starting, null);
+            ring(call, ringing, Ev.META_CALL_PROGRESS);
+
+            long ringMs = between(opts.ringMin, opts.ringMax);
+            boolean answers = rng.nextDouble() < opts.answer;
+            after(ringMs, call, () -> {
+                if (answers) answer(call, ringing.get(rng.nextInt(ringing.size())), ringing);
+                else hangup(call, false);
+            });
+        }
+
+        private void ring(SimCall call, List<SimConnection> conns, int meta) {
+            List<SimEv> progress = new ArrayList<>();
+            for (SimConnection c : conns) {
+                progress.add(connEv(ConnAlertingEv.ID, c, Connection.ALERTING, meta));
+                progress.add(termEv(TermConnCreatedEv.ID, c.tc, TerminalConnection.IDLE, meta));
+                progress.add(termEv(TermConnRingingEv.ID, c.tc, TerminalConnection.RINGING, meta));
+            }
+            call.reached(1, conns);
+            emit(call, progress, null);
+        }
+
+        private void answer(SimCall call, SimConnection winner, List<SimConnection> ringing) {
+            List<SimEv> evs = new ArrayList<>();
+            evs.add(connEv(ConnConnectedEv.ID, winner, Connection.CONNECTED, Ev.META_CALL_PROGRESS));
+            evs.add(termEv(TermConnActiveEv.ID, winner.tc, TerminalConnection.ACTIVE, Ev.META_CALL_PROGRESS));
+            for (SimConnection c : ringing) {
+                if (c != winner) drop(call, c, evs, Ev.META_CALL_REMOVING_PARTY);
+            }
+            answered++;
+            call.reached(2, Collections.singletonList(winner));
+            emit(call, evs, null);
+            after(between(opts.talkMin, opts.talkMax), call, () -> {
+                if (!call.transferred && rng.nextDouble() < opts.transfer) transfer(call, winner);
+                else hangup(call, true);
+            });
+        }
+
+        // Blind transfer: the answering line drops, another line rings and answers.
+        private void transfer(SimCall call, SimConnection from) {
+            call.transferred = true;
+            transfers++;
+            SimAddress to = addresses[rng.nextInt(addresses.length)];
+            if (to == from.address) to = addresses[(Integer.parseInt(to.name) - opts.firstDn + 1) % addresses.length];
+            List<SimEv> evs = new ArrayList<>();
+            drop(call, from, evs, Ev.META_CALL_TRANSFERRING);
+            SimConnection next = call.addConnection(to);
+            evs.add(connEv(ConnCreatedEv.ID, next, Connection.IDLE, Ev.META_CALL_TRANSFERRING));
+            evs.add(connEv(ConnInProgressEv.ID, next, Connection.INPROGRESS, Ev.META_CALL_TRANSFERRING));
+            // observers of the new line have never seen this call: they get a snapshot of it first
+            List<CallObserver> joined = call.join(Collections.singletonList(next));
+            emit(call, evs, joined.isEmpty() ? null : snapshot(call, next));
+            ring(call, Collections.singletonList(next), Ev.META_CALL_TRANSFERRING);
+            after(between(opts.ringMin, opts.ringMax), call,
+                () -> answer(call, next, Collections.singletonList(next)));
+        }
+
+        private List<SimEv> snapshot(SimCall call, SimConnection exclude) {
+            List<SimEv> evs = new ArrayList<>();
+            for (SimConnection c : call.liveConnections()) {
+                if (c == exclude) continue;
+                SimEv created = connEv(ConnCreatedEv.ID, c, c.state, Ev.META_SNAPSHOT);
+                created.cause = Ev.CAUSE_SNAPSHOT;
+                evs.add(created);
+                if (c.state == Connection.CONNECTED) {
+                    SimEv connected = connEv(ConnConnectedEv.ID, c, Connection.CONNECTED, Ev.META_SNAPSHOT);
+                    connected.cause = Ev.CAUSE_SNAPSHOT;
+                    evs.add(connected);
+                }
+            }
+            return evs;
+        }
+
+        private void hangup(SimCall call, boolean wasAnswered) {
+            if (!wasAnswered) abandoned++;
+            List<SimEv> evs = new ArrayList<>();
+            for (SimConnection c : call.liveConnections()) drop(call, c, evs, Ev.META_CALL_ENDING);
+            evs.add(new CallInvalidEvImpl(call, Ev.META_CALL_ENDING));
+            emit(call, evs, null);
+            end(call);
+        }
+
+        private void drop(SimCall call, SimConnection c, List<SimEv> evs, int meta) {
+            if (c.tc.state != TerminalConnection.IDLE) {
+                evs.add(termEv(TermConnDroppedEv.ID, c.tc, TerminalConnection.DROPPED, meta));
+            }
+            evs.add(connEv(ConnDisconnectedEv.ID, c, Connection.DISCONNECTED, meta));
+        }
+
+        private void end(SimCall call) {
+            call.ended = true;
+            active.remove(call);
+            for (CallObserver o : call.observers) {
+                deliver(o, new CallEv[] {new CallObservationEndedEvImpl(call)});
+            }
+            call.endedNanos = System.nanoTime();
+            finishing.add(call);
+        }
+
+        private void outage() {
+            if (state != IN_SERVICE) return;
+            state = OUT_OF_SERVICE;
+            EventLog.info("sim: provider OUT_OF_SERVICE for {}s, dropping {} calls", opts.outageSeconds, active.size());
+            for (SimCall call : new ArrayList<>(active)) {
+                call.lost = true;
+                lost++;
+                end(call);
+            }
+            clock.schedule(() -> {
+                if (state == OUT_OF_SERVICE) state = IN_SERVICE;
+                EventLog.info("sim: provider IN_SERVICE");
+            }, opts.outageSeconds, TimeUnit.SECONDS);
+        }
+
+        private void after(long millis, SimCall call, Runnable step) {
+            clock.schedule(() -> {
+                if (call.ended || state == SHUTDOWN) return;
+                try {
+                    step.run();
+                } catch (Exception e) {
+                    EventLog.warn("sim: call step failed: {}", e);
+                }
+            }, millis, TimeUnit.MILLISECONDS);
+        }
+
+        private long between(int min, int max) {
+            return max <= min ? min : min + rng.nextInt(max - min + 1);
+        }
+
+        private SimEv connEv(int id, SimConnection c, int newState, int meta) {
+            c.state = newState;
+            switch (id) {
+                case ConnCreatedEv.ID: return new ConnCreatedEvImpl(c, meta);
+                case ConnInProgressEv.ID: return new ConnInProgressEvImpl(c, meta);
+                case ConnAlertingEv.ID: return new ConnAlertingEvImpl(c, meta);
+                case ConnConnectedEv.ID: return new ConnConnectedEvImpl(c, meta);
+                default: return new ConnDisconnectedEvImpl(c, meta);
+            }
+        }
+
+        private SimEv termEv(int id, SimTermConn tc, int newState, int meta) {
+            tc.state = newState;
+            switch (id) {
+                case TermConnCreatedEv.ID: return new TermConnCreatedEvImpl(tc, meta);
+                case TermConnRingingEv.ID: return new TermConnRingingEvImpl(tc, meta);
+                case TermConnActiveEv.ID: return new TermConnActiveEvImpl(tc, meta);
+                default: return new TermConnDroppedEvImpl(tc, meta);
+            }
+        }
+
+        // One batch to every observer of the call; observers in `snapshotFor` (newly joined) get the snapshot first.
+        private void emit(SimCall call, List<SimEv> evs, List<SimEv> snapshot) {
+            if (evs.isEmpty()) return;
+            long now = System.nanoTime();
+            for (SimEv e : evs) e.emittedNanos = now;
+            evs.get(0).newMeta = true;
+            CallEv[] batch = evs.toArray(new CallEv[0]);
+            CallEv[] snap = null;
+            if (snapshot != null && !snapshot.isEmpty()) {
+                for (SimEv e : snapshot) e.emittedNanos = now;
+                snap = snapshot.toArray(new CallEv[0]);
+            }
+            for (CallObserver o : call.observers) {
+                if (snap != null && call.newObservers.contains(o)) deliver(o, snap);
+                deliver(o, batch);
+            }
+            call.newObservers.clear();
+        }
+
+        // Per-observer ordering, like Cisco's observer threads: an observer always uses the same thread.
+        private void deliver(CallObserver o, CallEv[] batch) {
+            delivery[Math.floorMod(System.identityHashCode(o), delivery.length)].queue.add(() -> o.callChangedEvent(batch));
+        }
+
+        // ---- pop accounting ----
+
+        synchronized void popped(SimEv ev, long now) {
+            pops++;
+            SimCall call = ev.call;
+            String key = "call";
+            if (ev instanceof SimConnEv) key = ((SimConnEv) ev).conn.address.name;
+            else if (ev instanceof SimTermConnEv) key = ((SimTermConnEv) ev).tc.conn.address.name;
+            call.pops.incrementAndGet();
+            if (!call.popKeys.add(key)) duplicates++;
+            long latency = now - ev.emittedNanos;
+            interval.add(latency);
+            total.add(latency);
+        }
+
+        // Calls that ended more than the grace period ago and should have popped but did not.
+        private void sweep() {
+            sweep(System.nanoTime() - MISSED_GRACE_NANOS);
+        }
+
+        private void sweep(long endedBefore) {
+            SimCall c;
+            while ((c = finishing.peek()) != null && c.endedNanos <= endedBefore) {
+                finishing.poll();
+                if (!c.lost && c.expected && c.pops.get() == 0) {
+                    synchronized (this) {
+                        missed++;
+                    }
+                }
+            }
+        }
+
+        private synchronized void report() {
+            long now = System.nanoTime();
+            double secs = Math.max(1e-3, (now - lastReportNanos) / 1e9);
+            long newPops = pops - popsAtLastReport;
+            int backlog = 0;
+            for (Delivery d : delivery) backlog += d.queue.size();
+            lastReport = String.format("sim: calls=%d active=%d answered=%d abandoned=%d transfers=%d lost=%d"
+                    + " pops=%d (%.1f/s) missed=%d duplicate=%d latency %s backlog=%d",
+                calls, active.size(), answered, abandoned, transfers, lost, pops, newPops / secs,
+                missed, duplicates, interval.describe(), backlog);
+            EventLog.info(lastReport);
+            Arrays.fill(interval.buckets, 0);
+            interval.count = 0;
+            interval.maxMicros = 0;
+            popsAtLastReport = pops;
+            lastReportNanos = now;
+        }
+
+        // ---- Provider ----
+
+        @Override public String getName() { return "CTI simulator"; }
+        @Override public int getState() { return state; }
+        @Override public Address[] getAddresses() { return addresses.clone(); }
+        @Override public Terminal[] getTerminals() {
+            Terminal[] t = new Terminal[addresses.length];
+            for (int i = 0; i < t.length; i++) t[i] = addresses[i].terminal;
+            return t;
+        }
+        @Override public Call[] getCalls() { return active.toArray(new Call[0]); }
+
+        @Override
+        public Address getAddress(String name) throws InvalidArgumentException {
+            SimAddress a = byName.get(name);
+            if (a == null) throw new InvalidArgumentException("Address " + name + " is not in provider's domain.");
+            return a;
+        }
+
+        @Override
+        public Terminal getTerminal(String name) throws InvalidArgumentException {
+            for (SimAddress a : addresses) {
+                if (a.terminal.name.equalsIgnoreCase(name)) return a.terminal;
+            }
+            throw new InvalidArgumentException("Terminal " + name + " is not in provider's domain.");
+        }
+
+        @Override
+        public void shutdown() {
+            if (state == SHUTDOWN) return;
+            state = SHUTDOWN;
+            clock.shutdownNow();
+            for (Delivery d : delivery) d.interrupt();
+            sweep(Long.MAX_VALUE);
+            report();
+            synchronized (this) {
+                double secs = Math.max(1e-3, (System.nanoTime() - startedNanos) / 1e9);
+                EventLog.info(String.format("sim total: %.0fs calls=%d pops=%d (%.1f/s) missed=%d duplicate=%d latency %s",
+                    secs, calls, pops, pops / secs, missed, duplicates, total.describe()));
+            }
+            running.remove(this);
+        }
+
+        @Override public Call createCall() throws MethodNotSupportedException { throw unsupported(); }
+        @Override public void addObserver(ProviderObserver o) throws MethodNotSupportedException { throw unsupported(); }
+        @Override public void removeObserver(ProviderObserver o) {}
+        @Override public ProviderObserver[] getObservers() { return null; }
+        @Override public ProviderCapabilities getCapabilities() { return null; }
+        @Override public ProviderCapabilities getProviderCapabilities() { return null; }
+        @Override public ProviderCapabilities getProviderCapabilities(Terminal t) { return null; }
+        @Override public CallCapabilities getCallCapabilities() { return null; }
+        @Override public CallCapabilities getCallCapabilities(Terminal t, Address a) { return null; }
+        @Override public AddressCapabilities getAddressCapabilities() { return null; }
+        @Override public AddressCapabilities getAddressCapabilities(Terminal t) { return null; }
+        @Override public TerminalCapabilities getTerminalCapabilities() { return null; }
+        @Override public TerminalCapabilities getTerminalCapabilities(Terminal t) { return null; }
+        @Override public ConnectionCapabilities getConnectionCapabilities() { return null; }
+        @Override public ConnectionCapabilities getConnectionCapabilities(Terminal t, Address a) { return null; }
+        @Override public TerminalConnectionCapabilities getTerminalConnectionCapabilities() { return null; }
+        @Override public TerminalConnectionCapabilities getTerminalConnectionCapabilities(Terminal t) { return null; }
+    }
+
+    private static MethodNotSupportedException unsupported() {
+        return new MethodNotSupportedException("Not available in the CTI simulator");
+    }
+
+    // Event delivery thread: runs observer callbacks in arrival order.
+    private static final class Delivery extends Thread {
+        final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+
+        Delivery(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isInterrupted()) {
+                    try {
+                        queue.take().run();
+                    } catch (RuntimeException e) {
+                        EventLog.warn("sim: observer threw {}", e);
+                    }
+                }
+            } catch (InterruptedException ignore) {
+                // provider shutdown
+            }
+        }
+    }
+
+    // ---- addresses, terminals, calls, connections ----
+
+    static final class SimAddress implements Address {
+        final SimProvider provider;
+        final String name;
+        final SimTerminal terminal;
+        final List<CallObserver> observers = new CopyOnWriteArrayList<>();
+
+        SimAddress(SimProvider provider, String name, boolean local) {
+            this.provider = provider;
+            this.name = name;
+            this.terminal = local ? new SimTerminal(this) : null;
+        }
+
+        @Override
+        public void addCallObserver(CallObserver o) throws ResourceUnavailableException {
+            if (provider.state != Provider.IN_SERVICE) {
+                throw new ResourceUnavailableException(ResourceUnavailableException.UNKNOWN, "Provider not in service");
+            }
+            if (observers.contains(o)) return;
+            if (o instanceof JTAPICallerInfo) ((JTAPICallerInfo) o).setPopTarget(POPS);
+            observers.add(o);
+            if (observers.size() == 1) provider.observed.add(this);
+        }
+
+        @Override
+        public void removeCallObserver(CallObserver o) {
+            observers.remove(o);
+            if (observers.isEmpty()) provider.observed.remove(this);
+        }
+
+        @Override public String getName() { return name; }
+        @Override public Provider getProvider() { return provider; }
+        @Override public Terminal[] getTerminals() { return terminal == null ? null : new Terminal[] {terminal}; }
+        @Override public CallObserver[] getCallObservers() { return observers.isEmpty() ? null : observers.toArray(new CallObserver[0]); }
+        @Override public Connection[] getConnections() { return null; }
+        @Override public void addObserver(AddressObserver o) throws MethodNotSupportedException { throw unsupported(); }
+        @Override public void removeObserver(AddressObserver o) {}
+        @Override public AddressObserver[] getObservers() { return null; }
+        @Override public AddressCapabilities getCapabilities() { return null; }
+        @Override public AddressCapabilities getAddressCapabilities(Terminal t) { return null; }
+        @Override public String toString() { return name; }
+    }
+
+    static final class SimTerminal implements Terminal {
+        final SimAddress address;
+        final String name;
+
+        SimTerminal(SimAddress address) {
+            this.address = address;
+            long dn;
+            try {
+                dn = Long.parseLong(address.name);
+            } catch (NumberFormatException e) {
+                dn = address.name.hashCode() & 0xffffffffL;
+            }
+            this.name = String.format("SEP%012X", dn);
+        }
+
+        @Override public String getName() { return name; }
+        @Override public Provider getProvider() { return address.provider; }
+        @Override public Address[] getAddresses() { return new Address[] {address}; }
+        @Override public void addCallObserver(CallObserver o) throws ResourceUnavailableException { address.addCallObserver(o); }
+        @Override public void removeCallObserver(CallObserver o) { address.removeCallObserver(o); }
+        @Override public CallObserver[] getCallObservers() { return address.getCallObservers(); }
+        @Override public TerminalConnection[] getTerminalConnections() { return null; }
+        @Override public void addObserver(TerminalObserver o) throws MethodNotSupportedException { throw unsupported(); }
+        @Override public void removeObserver(TerminalObserver o) {}
+        @Override public TerminalObserver[] getObservers() { return null; }
+        @Override public TerminalCapabilities getCapabilities() { return null; }
+        @Override public TerminalCapabilities getTerminalCapabilities(Terminal t, Address a) { return null; }
+        @Override public String toString() { return name; }
+    }
+
+    static final class SimCall implements Call {
+        final SimProvider provider;
+        final long id;
+        final List<SimConnection> connections = new CopyOnWriteArrayList<>();
+        final Set<CallObserver> observers = new CopyOnWriteArraySet<>();
+        final Set<CallObserver> newObservers = new HashSet<>(); // clock thread only
+        final Set<String> popKeys = ConcurrentHashMap.newKeySet();
+        final AtomicInteger pops = new AtomicInteger();
+        volatile boolean ended;
+        boolean transferred, lost, expected; // clock thread
+        long endedNanos;
+
+        SimCall(SimProvider provider, long id) {
+            this.provider = provider;
+            this.id = id;
+        }
+
+        SimConnection addConnection(SimAddress a) {
+            SimConnection c = new SimConnection(this, a);
+            connections.add(c);
+            return c;
+        }
+
+        List<SimConnection> liveConnections() {
+            List<SimConnection> out = new ArrayList<>();
+            for (SimConnection c : connections) {
+                if (c.state != Connection.DISCONNECTED && c.state != Connection.FAILED) out.add(c);
+            }
+            return out;
+        }
+
+        // Attach the observers of newly involved lines; returns the ones new to this call.
+        List<CallObserver> join(List<SimConnection> conns) {
+            List<CallObserver> added = new ArrayList<>();
+            for (SimConnection c : conns) {
+                for (CallObserver o : c.address.observers) {
+                    if (observers.add(o)) added.add(o);
+                }
+            }
+            newObservers.addAll(added);
+            return added;
+        }
+
+        // A stage was emitted on these lines; reaching the expected stage on an observed line means a pop is due.
+        void reached(int rank, List<SimConnection> conns) {
+            if (rank < provider.opts.expect) return;
+            for (SimConnection c : conns) {
+                if (!c.address.observers.isEmpty()) expected = true;
+            }
+        }
+
+        @Override public int getState() { return ended ? INVALID : ACTIVE; }
+        @Override public Provider getProvider() { return provider; }
+        @Override public Connection[] getConnections() { return connections.toArray(new Connection[0]); }
+        @Override public CallObserver[] getObservers() { return observers.toArray(new CallObserver[0]); }
+        @Override public void addObserver(CallObserver o) { observers.add(o); }
+        @Override public void removeObserver(CallObserver o) { observers.remove(o); }
+        @Override public Connection[] connect(Terminal t, Address a, String dialed) throws MethodNotSupportedException { throw unsupported(); }
+        @Override public CallCapabilities getCapabilities(Terminal t, Address a) { return null; }
+        @Override public CallCapabilities getCallCapabilities(Terminal t, Address a) { return null; }
+        @Override public String toString() { return "SimCall[" + id + "]"; }
+    }
+
+    static final class SimConnection implements Connection {
+        final SimCall call;
+        final SimAddress address;
+        final SimTermConn tc;
+        volatile int state = IDLE;
+
+        SimConnection(SimCall call, SimAddress address) {
+            this.call = call;
+            this.address = address;
+            this.tc = new SimTermConn(this);
+        }
+
+        @Override public Address getAddress() { return address; }
+        @Override public Call getCall() { return call; }
+        @Override public int getState() { return state; }
+        @Override public TerminalConnection[] getTerminalConnections() { return address.terminal == null ? null : new TerminalConnection[] {tc}; }
+        @Override public void disconnect() throws MethodNotSupportedException { throw unsupported(); }
+        @Override public ConnectionCapabilities getCapabilities() { return null; }
+        @Override public ConnectionCapabilities getConnectionCapabilities(Terminal t, Address a) { return null; }
+        @Override public String toString() { return address.name + "@" + call; }
+    }
+
+    static final class SimTermConn implements TerminalConnection {
+        final SimConnection conn;
+        volatile int state = IDLE;
+
+        SimTermConn(SimConnection conn) {
+            this.conn = conn;
+        }
+
+        @Override public Terminal getTerminal() { return conn.address.terminal; }
+        @Override public Connection getConnection() { return conn; }
+        @Override public int getState() { return state; }
+        @Override public void answer() throws MethodNotSupportedException { throw unsupported(); }
+        @Override public TerminalConnectionCapabilities getCapabilities() { return null; }
+        @Override public TerminalConnectionCapabilities getTerminalConnectionCapabilities(Terminal t, Address a) { return null; }
+    }
+
+    // ---- events (class names mirror Cisco's *Impl so the app logs them the same way) ----
+
+    abstract static class SimEv implements CallEv {
+        final int id;
+        final int meta;
+        final SimCall call;
+        int cause = CAUSE_NORMAL;
+        volatile long emittedNanos;
+        boolean newMeta;
+
+        SimEv(int id, SimCall call, int meta) {
+            this.id = id;
+            this.call = call;
+            this.meta = meta;
+        }
+
+        @Override public int getID() { return id; }
+        @Override public int getCause() { return cause; }
+        @Override public int getMetaCode() { return meta; }
+        @Override public boolean isNewMetaEvent() { return newMeta; }
+        @Override public Object getObserved() { return null; }
+        @Override public Call getCall() { return call; }
+        @Override public String toString() { return getClass().getSimpleName() + " " + call; }
+    }
+
+    abstract static class SimConnEv extends SimEv implements ConnEv {
+        final SimConnection conn;
+
+        SimConnEv(int id, SimConnection conn, int meta) {
+            super(id, conn.call, meta);
+            this.conn = conn;
+        }
+
+        @Override public Connection getConnection() { return conn; }
+        @Override public String toString() { return super.toString() + " " + conn.address.name; }
+    }
+
+    abstract static class SimTermConnEv extends SimEv implements TermConnEv {
+        final SimTermConn tc;
+
+        SimTermConnEv(int id, SimTermConn tc, int meta) {
+            super(id, tc.conn.call, meta);
+            this.tc = tc;
+        }
+
+        @Override public TerminalConnection getTerminalConnection() { return tc; }
+        @Override public String toString() { return super.toString() + " " + tc.getTerminal(); }
+    }
+
+    static final class CallActiveEvImpl extends SimEv implements CallActiveEv {
+        CallActiveEvImpl(SimCall c, int meta) { super(CallActiveEv.ID, c, meta); }
+    }
+
+    static final class CallInvalidEvImpl extends SimEv implements CallInvalidEv {
+        CallInvalidEvImpl(SimCall c, int meta) { super(CallInvalidEv.ID, c, meta); }
+    }
+
+    static final class CallObservationEndedEvImpl extends SimEv implements CallObservationEndedEv {
+        CallObservationEndedEvImpl(SimCall c) { super(CallObservationEndedEv.ID, c, META_CALL_ENDING); }
+        @Override public Object getEndedObject() { return call; }
+    }
+
+    static final class ConnCreatedEvImpl extends SimConnEv implements ConnCreatedEv {
+        ConnCreatedEvImpl(SimConnection c, int meta) { super(ConnCreatedEv.ID, c, meta); }
+    }
+
+    static final class ConnInProgressEvImpl extends SimConnEv implements ConnInProgressEv {
+        ConnInProgressEvImpl(SimConnection c, int meta) { super(ConnInProgressEv.ID, c, meta); }
+    }
+
+    static final class ConnAlertingEvImpl extends SimConnEv implements ConnAlertingEv {
+        ConnAlertingEvImpl(SimConnection c, int meta) { super(ConnAlertingEv.ID, c, meta); }
+    }
+
+    static final class ConnConnectedEvImpl extends SimConnEv implements ConnConnectedEv {
+        ConnConnectedEvImpl(SimConnection c, int meta) { super(ConnConnectedEv.ID, c, meta); }
+    }
+
+    static final class ConnDisconnectedEvImpl extends SimConnEv implements ConnDisconnectedEv {
+        ConnDisconnectedEvImpl(SimConnection c, int meta) { super(ConnDisconnectedEv.ID, c, meta); }
+    }
+
+    static final class TermConnCreatedEvImpl extends SimTermConnEv implements TermConnCreatedEv {
+        TermConnCreatedEvImpl(SimTermConn tc, int meta) { super(TermConnCreatedEv.ID, tc, meta); }
+    }
+
+    static final class TermConnRingingEvImpl extends SimTermConnEv implements TermConnRingingEv {
+        TermConnRingingEvImpl(SimTermConn tc, int meta) { super(TermConnRingingEv.ID, tc, meta); }
+    }
+
+    static final class TermConnActiveEvImpl extends SimTermConnEv implements TermConnActiveEv {
+        TermConnActiveEvImpl(SimTermConn tc, int meta) { super(TermConnActiveEv.ID, tc, meta); }
+    }
+
+    static final class TermConnDroppedEvImpl extends SimTermConnEv implements TermConnDroppedEv {
+        TermConnDroppedEvImpl(SimTermConn tc, int meta) { super(TermConnDroppedEv.ID, tc, meta); }
+    }
+}
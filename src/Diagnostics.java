@@ -0,0 +1,323 @@
+import javax.telephony.Call;
+import javax.telephony.events.CallEv;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import jdk.jfr.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Support bundle for "the pop never came" reports: a zip with a JFR recording, the per-call state every
+// listener holds, queue depths and counters, thread dumps (platform and virtual) and the last
+// diagnosticsMinutes (10 when unset) of call-events.log. Created from the GUI (Ctrl+Shift+D) or by typing
+// "diag" at the CLI; written to the diagnostics folder under the config directory as diagnostics-<time>.zip
+// (the install folder is read-only for agents).
+//
+// The JFR events below trace a pop end to end: JTAPI event received (and whether the filter kept it),
+// stage matched, pop dispatched, browser launched (with its duration). By default nothing records until a
+// bundle is requested, which then takes a SAMPLE_SECONDS sample. Setting diagnosticsMinutes > 0 opts in to
+// a continuous recording of that window (plus the JDK's default events), so a bundle also covers the time
+// before the agent noticed. EventReceived fires for every JTAPI event, so whether it is enabled is cached
+// and refreshed only when a recording starts or stops; disabled, it costs one volatile read.
+public final class Diagnostics {
+    private static final int SAMPLE_SECONDS = 10;  // recording length when no continuous recording runs
+    private static final int DEFAULT_LOG_MINUTES = 10;
+    private static final Path BUNDLE_DIR = ConfigStore.DEFAULT_DIR.resolve("diagnostics");
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final DateTimeFormatter LOG_TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static volatile AppConfig config = AppConfig.defaults();
+    private static Recording continuous;  // guarded by class lock
+    private static volatile boolean receivedEnabled;
+
+    static {
+        if (FlightRecorder.isAvailable()) {
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recordingStateChanged(Recording recording) {
+                    receivedEnabled = EventType.getEventType(EventReceived.class).isEnabled();
+                }
+            });
+        }
+    }
+
+    private Diagnostics() {}
+
+    @Name("ctipopup.EventReceived")
+    @Label("JTAPI Event Received")
+    @Category("CTI Popup")
+    @StackTrace(false)
+    static class EventReceived extends Event {
+        @Label("Event") String event;
+        @Label("Event ID") int eventId;
+        @Label("Kept By Filter") boolean kept;
+        @Label("Listener") String listener;
+    }
+
+    @Name("ctipopup.StageMatched")
+    @Label("Call Stage Matched")
+    @Category("CTI Popup")
+    @StackTrace(false)
+    static class StageMatched extends Event {
+        @Label("Call ID") String callId;
+        @Label("Stage") String stage;
+        @Label("Address") String address;
+        @Label("Caller") String caller;
+    }
+
+    @Name("ctipopup.PopDispatched")
+    @Label("Pop Dispatched")
+    @Category("CTI Popup")
+    @StackTrace(false)
+    static class PopDispatched extends Event {
+        @Label("Call ID") String callId;
+        @Label("Action") String action;
+    }
+
+    @Name("ctipopup.PopLaunched")
+    @Label("Pop Launched")
+    @Description("Browser launch for a pop; the duration is the time the launch took")
+    @Category("CTI Popup")
+    @StackTrace(false)
+    static class PopLaunched extends Event {
+        @Label("Call ID") String callId;
+        @Label("Method") String method;
+        @Label("URL") String url;
+    }
+
+    // Keep the config for the bundle summary and start/stop the continuous recording to match it.
+    public static synchronized void configure(AppConfig cfg) {
+        config = cfg;
+        int minutes = cfg.getDiagnosticsMinutes();
+        if (continuous != null && (minutes == 0 || !continuous.getMaxAge().equals(Duration.ofMinutes(minutes)))) {
+            continuous.close();
+            continuous = null;
+        }
+        if (minutes <= 0 || continuous != null || !FlightRecorder.isAvailable()) return;
+        try {
+            Recording r = new Recording(Configuration.getConfiguration("default"));
+            r.setName("ctipopup");
+            r.setToDisk(true);
+            r.setMaxAge(Duration.ofMinutes(minutes));
+            r.start();
+            continuous = r;
+        } catch (Exception e) {
+            EventLog.warn("JFR recording not started: {}", e.getMessage());
+        }
+    }
+
+    // ---- JFR hooks (called from JTAPICallerInfo) ----
+
+    static void received(CallEv ev, boolean kept, String listener) {
+        if (!receivedEnabled) return;
+        EventReceived e = new EventReceived();
+        String n = ev.getClass().getSimpleName();
+        e.event = n.endsWith("Impl") ? n.substring(0, n.length() - 4) : n;
+        e.eventId = ev.getID();
+        e.kept = kept;
+        e.listener = listener == null ? "ALL" : listener;
+        e.commit();
+    }
+
+    static void matched(Call call, TriggerRules.Stage stage, String address, String caller) {
+        StageMatched e = new StageMatched();
+        if (!e.isEnabled()) return;
+        e.callId = JTAPICallerInfo.callId(call);
+        e.stage = stage.name();
+        e.address = address;
+        e.caller = caller;
+        e.commit();
+    }
+
+    static void dispatched(Call call, TriggerRules.Action action) {
+        PopDispatched e = new PopDispatched();
+        if (!e.isEnabled()) return;
+        e.callId = JTAPICallerInfo.callId(call);
+        e.action = action.name();
+        e.commit();
+    }
+
+    // begin() before the launch, launched() after it.
+    static PopLaunched launching() {
+        PopLaunched e = new PopLaunched();
+        e.begin();
+        return e;
+    }
+
+    static void launched(PopLaunched e, Call call, String method, String url) {
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.callId = call == null ? null : JTAPICallerInfo.callId(call);
+        e.method = method;
+        e.url = url;
+        e.commit();
+    }
+
+    // ---- bundle ----
+
+    // Build the zip; blocks for a few seconds (longer without a continuous recording), so call it off the EDT.
+    public static Path writeBundle() throws IOException {
+        EventLog.flush();
+        AppConfig cfg = config;
+        int minutes = cfg.getDiagnosticsMinutes() > 0 ? cfg.getDiagnosticsMinutes() : DEFAULT_LOG_MINUTES;
+        LocalDateTime now = LocalDateTime.now();
+        Path dir = Paths.get(System.getProperty("user.dir")); // where call-events.log and the CiscoJtapi logs are
+        Files.createDirectories(BUNDLE_DIR);
+        Path zip = BUNDLE_DIR.resolve("diagnostics-" + now.format(STAMP) + ".zip");
+        Path work = Files.createTempDirectory("ctipopup-diag");
+        try (ZipOutputStream z = new ZipOutputStream(Files.newOutputStream(zip))) {
+            put(z, "summary.txt", summary(cfg, now));
+            put(z, "calls.txt", String.join("\n", JTAPICallerInfo.callStates()) + "\n");
+            put(z, "threads.txt", threadDump());
+            try {
+                // includes virtual threads, which ThreadMXBean does not list
+                Path vt = work.resolve("threads.json");
+                ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                    .dumpThreads(vt.toString(), HotSpotDiagnosticMXBean.ThreadDumpFormat.JSON);
+                putFile(z, "threads.json", vt);
+            } catch (Exception e) {
+                put(z, "threads.json.error.txt", e + "\n");
+            }
+            try {
+                Path jfr = work.resolve("recording.jfr");
+                if (dumpRecording(jfr)) putFile(z, "recording.jfr", jfr);
+            } catch (Exception e) {
+                put(z, "recording.jfr.error.txt", e + "\n");
+            }
+            put(z, "call-events.log", journal(dir, now.minusMinutes(minutes)));
+            // CiscoJtapi logs are normally removed by the GUI log cleaner; include any that are recent
+            long cutoff = System.currentTimeMillis() - minutes * 60_000L;
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "CiscoJtapi*.log")) {
+                for (Path p : ds) {
+                    if (Files.getLastModifiedTime(p).toMillis() >= cutoff) putFile(z, "jtapi/" + p.getFileName(), p);
+                }
+            } catch (IOException ignore) {}
+        } finally {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(work)) {
+                for (Path p : ds) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(work);
+        }
+        EventLog.info("Diagnostics bundle written to {}", zip);
+        return zip;
+    }
+
+    private static boolean dumpRecording(Path out) throws Exception {
+        if (!FlightRecorder.isAvailable()) return false;
+        Recording r;
+        synchronized (Diagnostics.class) {
+            r = continuous;
+        }
+        if (r != null) {
+            r.dump(out);
+            return true;
+        }
+        // no background recording: take a short sample now
+        try (Recording sample = new Recording(Configuration.getConfiguration("default"))) {
+            sample.setName("ctipopup-sample");
+            sample.start();
+            Thread.sleep(SAMPLE_SECONDS * 1000L);
+            sample.stop();
+            sample.dump(out);
+        }
+        return true;
+    }
+
+    private static String summary(AppConfig cfg, LocalDateTime now) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("time: ").append(now).append('\n');
+        sb.append("java: ").append(System.getProperty("java.vendor")).append(' ').append(Runtime.version()).append('\n');
+        sb.append("os: ").append(System.getProperty("os.name")).append(' ').append(System.getProperty("os.version")).append('\n');
+        sb.append("uptime: ").append(ManagementFactory.getRuntimeMXBean().getUptime() / 1000).append("s\n");
+        Runtime rt = Runtime.getRuntime();
+        sb.append("heap: used=").append((rt.totalMemory() - rt.freeMemory()) >> 20).append("MB max=")
+            .append(rt.maxMemory() >> 20).append("MB\n");
+        sb.append("\n[queues]\n");
+        sb.append("log queue=").append(EventLog.queued()).append(" dropped=").append(EventLog.droppedCount()).append('\n');
+        for (TaskScope s : TaskScope.open()) {
+            sb.append("tasks in flight (").append(s.getName()).append(")=").append(s.inFlight()).append('\n');
+        }
+        sb.append("pop ledger entries=").append(PopLedger.size()).append('\n');
+        lines(sb, WebhookDispatcher.stats());
+        lines(sb, Wallboard.stats());
+        lines(sb, CtiSimulator.stats());
+        sb.append("\n[events]\n").append(EventFilter.summary()).append('\n');
+        lines(sb, EventFilter.stats());
+        sb.append("\n[call statistics]\n");
+        lines(sb, CallAnalytics.summary());
+        sb.append("\n[config]\n");
+        Properties p = cfg.toProperties();
+        p.setProperty("password", cfg.getPassword().isEmpty() ? "" : "********");
+        for (String k : new TreeSet<>(p.stringPropertyNames())) sb.append(k).append('=').append(p.getProperty(k)).append('\n');
+        return sb.toString();
+    }
+
+    private static void lines(StringBuilder sb, List<String> lines) {
+        for (String l : lines) sb.append(l).append('\n');
+    }
+
+    // Full stacks (ThreadInfo.toString() cuts them at 8 frames) with lock details.
+    private static String threadDump() {
+        StringBuilder sb = new StringBuilder();
+        for (ThreadInfo ti : ManagementFactory.getThreadMXBean().dumpAllThreads(true, true)) {
+            sb.append('"').append(ti.getThreadName()).append("\" id=").append(ti.getThreadId())
+                .append(' ').append(ti.getThreadState());
+            if (ti.getLockName() != null) sb.append(" on ").append(ti.getLockName());
+            if (ti.getLockOwnerName() != null) sb.append(" owned by \"").append(ti.getLockOwnerName()).append('"');
+            sb.append('\n');
+            for (StackTraceElement f : ti.getStackTrace()) sb.append("\tat ").append(f).append('\n');
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // call-events.log lines from the cutoff on (yesterday's rolled file too when the window spans midnight).
+    // Lines without a timestamp (stack traces) go with the line before them.
+    private static String journal(Path dir, LocalDateTime cutoff) {
+        String from = cutoff.format(LOG_TS);
+        List<Path> files = new ArrayList<>();
+        if (!cutoff.toLocalDate().equals(LocalDateTime.now().toLocalDate())) {
+            files.add(dir.resolve("call-events-" + cutoff.toLocalDate() + ".log"));
+        }
+        files.add(dir.resolve("call-events.log"));
+        StringBuilder sb = new StringBuilder();
+        for (Path f : files) {
+            if (!Files.exists(f)) continue;
+            try (BufferedReader br = Files.newBufferedReader(f, StandardCharsets.UTF_8)) {
+                boolean keep = false;
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.length() >= 19 && Character.isDigit(line.charAt(0)) && line.charAt(4) == '-') {
+                        keep = line.substring(0, 19).compareTo(from) >= 0;
+                    }
+                    if (keep) sb.append(line).append('\n');
+                }
+            } catch (IOException e) {
+                sb.append("(could not read ").append(f.getFileName()).append(": ").append(e.getMessage()).append(")\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void put(ZipOutputStream z, String name, String text) throws IOException {
+        z.putNextEntry(new ZipEntry(name));
+        z.write(text.getBytes(StandardCharsets.UTF_8));
+        z.closeEntry();
+    }
+
+    private static void putFile(ZipOutputStream z, String name, Path file) throws IOException {
+        z.putNextEntry(new ZipEntry(name));
+        Files.copy(file, z);
+        z.closeEntry();
+    }
+}
@@ -0,0 +1,147 @@
+import javax.telephony.Address;
+import javax.telephony.Terminal;
+import javax.telephony.events.*;
+
+import com.cisco.jtapi.extensions.CiscoAddrEvFilter;
+import com.cisco.jtapi.extensions.CiscoAddress;
+import com.cisco.jtapi.extensions.CiscoTermEvFilter;
+import com.cisco.jtapi.extensions.CiscoTerminal;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Pre-filter in front of JTAPICallerInfo.handleEvent. The event types a listener needs are worked out
+// from the active config: the stages that trigger rules act on, plus every stage when webhooks, call
+// statistics or the wallboard are on (they consume the whole lifecycle). Anything else (CallActiveEv, ConnInProgressEv,
+// TermConnCreatedEv, TermConnDroppedEv, CallInvalidEv, ...) is dropped before any processing or logging,
+// unless logAllEvents is set. Per-type processed/filtered counts are kept for all listeners.
+//
+// Cisco JTAPI cannot narrow the core call events sent to a CallObserver. Its address and terminal filters
+// only cover the Cisco extension events (park, intercom, device state, RTP, ...), so on subscribe those are
+// switched off for events this app never uses.
+public final class EventFilter {
+    private static final Map<Integer, Counter> counters = new ConcurrentHashMap<>();
+
+    private final BitSet wanted = new BitSet();
+    private final boolean passAll;
+
+    private EventFilter(Set<TriggerRules.Stage> stages, boolean terminalEvents, boolean passAll) {
+        this.passAll = passAll;
+        // always: cleanup, and the calling number is captured from ConnCreatedEv whatever the stage
+        wanted.set(CallObservationEndedEv.ID);
+        wanted.set(ConnCreatedEv.ID);
+        if (stages.contains(TriggerRules.Stage.ALERTING) || stages.contains(TriggerRules.Stage.RINGING)) {
+            wanted.set(ConnAlertingEv.ID);
+            if (terminalEvents) wanted.set(TermConnRingingEv.ID);
+        }
+        if (stages.contains(TriggerRules.Stage.CONNECTED)) {
+            wanted.set(ConnConnectedEv.ID);
+            if (terminalEvents) wanted.set(TermConnActiveEv.ID);
+        }
+        if (stages.contains(TriggerRules.Stage.DISCONNECTED)) wanted.set(ConnDisconnectedEv.ID);
+    }
+
+    // terminalEvents: the listener watches one line (terminal-connection events are only matched then).
+    public static EventFilter forConfig(AppConfig cfg, boolean terminalEvents) {
+        boolean wholeLifecycle = !cfg.getWebhooks().isEmpty() || cfg.isCallStatsEnabled() || cfg.getWallboardPort() > 0;
+        return forRules(cfg.getTriggerRules(), wholeLifecycle, terminalEvents, cfg.isLogAllEvents());
+    }
+
+    public static EventFilter forRules(TriggerRules rules, boolean wholeLifecycle, boolean terminalEvents, boolean passAll) {
+        Set<TriggerRules.Stage> stages = EnumSet.noneOf(TriggerRules.Stage.class);
+        for (TriggerRules.Stage s : TriggerRules.Stage.values()) {
+            if (wholeLifecycle || rules.actionsFor(s).length > 0) stages.add(s);
+        }
+        // the LOG summary on DISCONNECTED reports ring/talk time, which needs the CONNECTED time
+        if (stages.contains(TriggerRules.Stage.DISCONNECTED)) stages.add(TriggerRules.Stage.CONNECTED);
+        return new EventFilter(stages, terminalEvents, passAll);
+    }
+
+    public boolean accept(CallEv ev) {
+        int id = ev.getID();
+        boolean pass = passAll || (id >= 0 && wanted.get(id));
+        Counter c = counters.get(id);
+        if (c == null) c = counters.computeIfAbsent(id, k -> new Counter(eventName(ev)));
+        (pass ? c.processed : c.filtered).increment();
+        return pass;
+    }
+
+    // Turn off Cisco extension events on a line before subscribing (no-op for other providers).
+    public static void applyProviderFilters(Address a) {
+        try {
+            if (a instanceof CiscoAddress) {
+                CiscoAddress ca = (CiscoAddress) a;
+                CiscoAddrEvFilter f = ca.getFilter();
+                if (f != null) {
+                    f.setCiscoAddrParkStatusEvFilter(false);
+                    f.setCiscoAddrIntercomInfoChangedEvFilter(false);
+                    f.setCiscoAddrIntercomInfoRestorationFailedEvFilter(false);
+                    f.setCiscoAddrRecordingConfigChangedEvFilter(false);
+                    f.setCiscoAddrPickupGroupChangedEvFilter(false);
+                    f.setCiscoAddrMonitoringTerminatedEvFilter(false);
+                    f.setCiscoAddrVoiceMailPilotChangedEvFilter(false);
+                    ca.setFilter(f);
+                }
+            }
+            Terminal[] terminals = a.getTerminals();
+            if (terminals == null) return;
+            for (Terminal t : terminals) {
+                if (!(t instanceof CiscoTerminal)) continue;
+                CiscoTerminal ct = (CiscoTerminal) t;
+                CiscoTermEvFilter f = ct.getFilter();
+                if (f == null) continue;
+                f.setDeviceDataEnabled(false);
+                f.setButtonPressedEnabled(false);
+                f.setRTPEventsEnabled(false);
+                f.setRTPKeyEventsEnabled(false);
+                f.setDeviceStateActiveEvFilter(false);
+                f.setDeviceStateHeldEvFilter(false);
+                f.setDeviceStateAlertingEvFilter(false);
+                f.setDeviceStateIdleEvFilter(false);
+                f.setDeviceStateWhisperEvFilter(false);
+                f.setDNDChangedEvFilter(false);
+                f.setDNDOptionChangedEvFilter(false);
+                f.setMultiMediaStreamsInfoEvFilter(false);
+                f.setHuntLogStatusChangedEvFilter(false);
+                ct.setFilter(f);
+            }
+        } catch (Exception e) {
+            // filters are an optimisation only; never fail a subscription over them
+            EventLog.warn("Could not set event filters on {}: {}", a.getName(), e.getMessage());
+        }
+    }
+
+    // One line per event type seen, busiest first.
+    public static List<String> stats() {
+        List<Counter> list = new ArrayList<>(counters.values());
+        list.sort((x, y) -> Long.compare(y.processed.sum() + y.filtered.sum(), x.processed.sum() + x.filtered.sum()));
+        List<String> out = new ArrayList<>();
+        for (Counter c : list) out.add(c.name + " processed=" + c.processed.sum() + " filtered=" + c.filtered.sum());
+        return out;
+    }
+
+    public static String summary() {
+        long processed = 0, filtered = 0;
+        for (Counter c : counters.values()) {
+            processed += c.processed.sum();
+            filtered += c.filtered.sum();
+        }
+        return "events processed=" + processed + " filtered=" + filtered;
+    }
+
+    private static String eventName(CallEv ev) {
+        String n = ev.getClass().getSimpleName();
+        return n.endsWith("Impl") ? n.substring(0, n.length() - 4) : n;
+    }
+
+    private static final class Counter {
+        final String name;
+        final LongAdder processed = new LongAdder();
+        final LongAdder filtered = new LongAdder();
+
+        Counter(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Single output path for console and call-events.log. The observer thread calls log(...) and this does
+// the level check (one volatile read, nothing allocated for a disabled level) before queueing the
+// message with its arguments. Formatting ("{}" placeholders), timestamps and all I/O happen on
+// one writer thread. The writer prints a whole batch to stdout in one write and appends it to the file
+// in one open. The queue is bounded, so a blocked console or disk drops lines (and counts them) rather
+// than stalling CTI events.
+//
+// Levels are set separately for the console (consoleLevel) and the file (logLevel). High-rate
+// categories log through a Sampler, which lets through logSampleRate lines per second and then
+// reports how many lines it suppressed.
+public final class EventLog {
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final long FLUSH_WAIT_MILLIS = 5_000;
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final ArrayBlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final Object FILE_LOCK = new Object();
+    private static final LongAdder dropped = new LongAdder();
+
+    private static volatile int consoleLevel = Level.INFO.ordinal();
+    private static volatile int fileLevel = Level.INFO.ordinal();
+    private static volatile int minLevel = Level.INFO.ordinal();
+    private static volatile int sampleRate = 20;   // lines per second per sampled category; 0 = unlimited
+    private static volatile Thread writer;
+
+    private EventLog() {}
+
+    public static void configure(AppConfig cfg) {
+        consoleLevel = cfg.getConsoleLevel().ordinal();
+        fileLevel = cfg.getLogLevel().ordinal();
+        minLevel = Math.min(consoleLevel, fileLevel);
+        sampleRate = cfg.getLogSampleRate();
+    }
+
+    // Lenient like the rest of AppConfig: unknown names fall back to the default.
+    public static Level parseLevel(String s, Level def) {
+        if (s == null) return def;
+        String v = s.trim().toUpperCase();
+        if (v.equals("WARNING")) return Level.WARN;
+        for (Level l : Level.values()) {
+            if (l.name().equals(v)) return l;
+        }
+        return def;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= minLevel && level != Level.OFF;
+    }
+
+    // Fixed-arity overloads so a disabled call does not even allocate a varargs array.
+    public static void log(Level level, String msg) {
+        if (isEnabled(level)) enqueue(new Entry(level, msg, 0, null, null, null, null));
+    }
+
+    public static void log(Level level, String fmt, Object a) {
+        if (isEnabled(level)) enqueue(new Entry(level, fmt, 1, a, null, null, null));
+    }
+
+    public static void log(Level level, String fmt, Object a, Object b) {
+        if (isEnabled(level)) enqueue(new Entry(level, fmt, 2, a, b, null, null));
+    }
+
+    public static void log(Level level, String fmt, Object a, Object b, Object c) {
+        if (isEnabled(level)) enqueue(new Entry(level, fmt, 3, a, b, c, null));
+    }
+
+    public static void log(Level level, String fmt, Object a, Object b, Object c, Object d) {
+        if (isEnabled(level)) enqueue(new Entry(level, fmt, 4, a, b, c, d));
+    }
+
+    public static void debug(String fmt, Object a) { log(Level.DEBUG, fmt, a); }
+    public static void debug(String fmt, Object a, Object b) { log(Level.DEBUG, fmt, a, b); }
+    public static void info(String msg) { log(Level.INFO, msg); }
+    public static void info(String fmt, Object a) { log(Level.INFO, fmt, a); }
+    public static void info(String fmt, Object a, Object b) { log(Level.INFO, fmt, a, b); }
+    public static void warn(String fmt, Object a) { log(Level.WARN, fmt, a); }
+    public static void warn(String fmt, Object a, Object b) { log(Level.WARN, fmt, a, b); }
+
+    // The stack trace goes to the file only; the console gets the one-line message.
+    public static void error(String fmt, Object a, Throwable t) {
+        if (!isEnabled(Level.ERROR)) return;
+        Entry e = new Entry(Level.ERROR, fmt, 1, a, null, null, null);
+        e.thrown = t;
+        enqueue(e);
+    }
+
+    // Rate-limited category, e.g. EventLog.sampler("event") for the per-event catch-all lines.
+    public static Sampler sampler(String category) {
+        return new Sampler(category);
+    }
+
+    // Blocks until everything queued so far is written (CLI exit, shutdown hooks). A barrier entry goes
+    // through the queue and the writer releases it after writing the batch it arrived in, so this also
+    // waits for a batch the writer is already in the middle of and keeps lines in order. Bounded by
+    // FLUSH_WAIT_MILLIS in case the writer is stuck on a blocked console.
+    public static void flush() {
+        if (writer == null) return; // nothing was ever logged
+        Entry barrier = new Entry(Level.OFF, null, 0, null, null, null, null);
+        barrier.written = new CountDownLatch(1);
+        try {
+            if (queue.offer(barrier, FLUSH_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                barrier.written.await(FLUSH_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static int queued() {
+        return queue.size();
+    }
+
+    public static long droppedCount() {
+        return dropped.sum();
+    }
+
+    private static void enqueue(Entry e) {
+        if (!queue.offer(e)) {
+            dropped.increment();
+            return;
+        }
+        if (writer == null) {
+            synchronized (FILE_LOCK) {
+                if (writer == null) writer = TaskScope.startVirtual("log-writer", EventLog::drain);
+            }
+        }
+    }
+
+    // Writer loop: wait for the next entry, then write everything queued as one batch.
+    private static void drain() {
+        List<Entry> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    reportDropped();
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private static long droppedReported;
+
+    private static void reportDropped() {
+        long d = dropped.sum();
+        if (d == droppedReported) return;
+        Entry e = new Entry(Level.WARN, "Log queue full: {} lines dropped", 1, d - droppedReported, null, null, null);
+        droppedReported = d;
+        write(List.of(e));
+    }
+
+    private static void write(List<Entry> batch) {
+        int console = consoleLevel, file = fileLevel;
+        StringBuilder out = new StringBuilder();
+        StringBuilder log = new StringBuilder();
+        for (Entry e : batch) {
+            if (e.written != null) continue; // flush barrier
+            String text = e.format();
+            int lvl = e.level.ordinal();
+            if (lvl >= console) {
+                if (e.level.compareTo(Level.WARN) >= 0) out.append(e.level).append(' ');
+                out.append(text).append(System.lineSeparator());
+            }
+            if (lvl >= file) {
+                log.append(TS.format(Instant.ofEpochMilli(e.time))).append(' ');
+                if (e.level.compareTo(Level.WARN) >= 0) log.append(e.level).append(' ');
+                log.append(text).append(System.lineSeparator());
+                if (e.thrown != null) {
+                    StringWriter sw = new StringWriter();
+                    e.thrown.printStackTrace(new PrintWriter(sw));
+                    log.append(sw);
+                }
+            }
+        }
+        if (out.length() > 0) {
+            System.out.print(out);
+            System.out.flush();
+        }
+        if (log.length() > 0) appendFile(log);
+        for (Entry e : batch) {
+            if (e.written != null) e.written.countDown();
+        }
+    }
+
+    private static void appendFile(CharSequence text) {
+        File logFile = new File(System.getProperty("user.dir"), "call-events.log");
+        synchronized (FILE_LOCK) {
+            // Roll daily: yesterday's file becomes call-events-<date>.log so pruneOldLogs can age it out
+            String today = LocalDate.now().toString();
+            if (logFile.exists()) {
+                String fileDay = Instant.ofEpochMilli(logFile.lastModified()).atZone(ZoneId.systemDefault()).toLocalDate().toString();
+                if (!fileDay.equals(today)) {
+                    logFile.renameTo(new File(logFile.getParentFile(), "call-events-" + fileDay + ".log"));
+                }
+            }
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), StandardCharsets.UTF_8))) {
+                w.append(text);
+            } catch (IOException e) {
+                System.err.println("Failed to write log: " + e.getMessage());
+            }
+        }
+    }
+
+    // "{}" placeholders take the arguments in order; extra placeholders stay as they are.
+    static String format(String fmt, Object[] args, int argc) {
+        if (argc == 0) return fmt;
+        StringBuilder sb = new StringBuilder(fmt.length() + 32 * argc);
+        int from = 0, used = 0;
+        while (used < argc) {
+            int at = fmt.indexOf("{}", from);
+            if (at < 0) break;
+            sb.append(fmt, from, at).append(args[used++]);
+            from = at + 2;
+        }
+        return sb.append(fmt, from, fmt.length()).toString();
+    }
+
+    private static final class Entry {
+        final long time = System.currentTimeMillis();
+        final Level level;
+        final String fmt;
+        final int argc;
+        final Object a, b, c, d;
+        Throwable thrown;
+        CountDownLatch written; // set on flush barriers only
+
+        Entry(Level level, String fmt, int argc, Object a, Object b, Object c, Object d) {
+            this.level = level;
+            this.fmt = fmt;
+            this.argc = argc;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.d = d;
+        }
+
+        String format() {
+            return argc == 0 ? fmt : EventLog.format(fmt, new Object[] {a, b, c, d}, argc);
+        }
+    }
+
+    // Per-category budget of sampleRate lines per second. The first line of a new second reports
+    // how many were suppressed in the previous one. Races between threads only blur the count slightly.
+    public static final class Sampler {
+        private final String category;
+        private final AtomicLong second = new AtomicLong();
+        private final AtomicInteger used = new AtomicInteger();
+        private final AtomicInteger suppressed = new AtomicInteger();
+        private final LongAdder suppressedTotal = new LongAdder();
+
+        private Sampler(String category) {
+            this.category = category;
+        }
+
+        public void log(Level level, String fmt, Object a) {
+            if (!isEnabled(level) || !admit(level)) return;
+            enqueue(new Entry(level, fmt, 1, a, null, null, null));
+        }
+
+        public void log(Level level, String fmt, Object a, Object b) {
+            if (!isEnabled(level) || !admit(level)) return;
+            enqueue(new Entry(level, fmt, 2, a, b, null, null));
+        }
+
+        public long suppressedCount() {
+            return suppressedTotal.sum();
+        }
+
+        private boolean admit(Level level) {
+            int rate = sampleRate;
+            if (rate <= 0) return true;
+            long now = System.currentTimeMillis() / 1000;
+            long s = second.get();
+            if (now != s && second.compareAndSet(s, now)) {
+                used.set(0);
+                int n = suppressed.getAndSet(0);
+                if (n > 0) enqueue(new Entry(level, "({} '{}' lines suppressed in the last second)", 2, n, category, null, null));
+            }
+            if (used.incrementAndGet() <= rate) return true;
+            suppressed.incrementAndGet();
+            suppressedTotal.increment();
+            return false;
+        }
+    }
+}
@@ -3,29 +3,53 @@ import javax.telephony.events.*;
 import javax.telephony.callcontrol.*;
 import javax.telephony.callcontrol.events.*;
 
+import com.cisco.jtapi.extensions.CiscoCall;
+
 import java.io.*;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.Collections;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.awt.Desktop;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class JTAPICallerInfo implements CallObserver {
-    private static final Logger LOGGER = Logger.getLogger(JTAPICallerInfo.class.getName());
-    private final String urlTemplate;
-    // trigger values: CREATED, ALERTING, CONNECTED, RINGING
-    private final String trigger;
+    private static final java.time.Duration POP_DEADLINE = java.time.Duration.ofSeconds(30);
+    private static final java.time.Duration PREFETCH_DEADLINE = java.time.Duration.ofSeconds(15);
+    static final java.time.Duration SUBSCRIBE_DEADLINE = java.time.Duration.ofMinutes(2);
+    // high-rate log lines (unmatched events, other lines' connections) are capped per second
+    private static final EventLog.Sampler OTHER_EVENTS = EventLog.sampler("Event");
+    private static final EventLog.Sampler SKIPPED = EventLog.sampler("Skipping event");
+    private volatile TaskScope scope = TaskScope.global();
+    // urlTemplate/rules/rate limit can be switched live from the config without a provider reconnect
+    private volatile String urlTemplate;
+    // compiled stage -> actions table; built from trigger values (CREATED, ALERTING, RINGING, CONNECTED)
+    // or an explicit rule spec such as "CREATED=PREFETCH; RINGING=OPEN; DISCONNECTED=LOG"
+    private volatile TriggerRules rules;
+    private volatile int maxPopsPerMinute = 0; // 0 = unlimited
+    // dial plan: raw calling number -> E.164, available to the URL template as {e164}
+    private volatile NumberNormalizer normalizer = NumberNormalizer.parse("");
+    // drops event types that neither the rules nor webhooks/statistics need, before any processing
+    private volatile EventFilter filter;
+    private volatile boolean callStats = true;
+    private volatile PopTarget popTarget = BROWSER;
+    private long popWindowStart = 0;
+    private int popsInWindow = 0;
     private final String monitoredAddress; // optional address name this listener is primarily for
-    // store calling number observed on ConnCreatedEv keyed by Call
-    private final Map<Call, String> callCaller = Collections.synchronizedMap(new WeakHashMap<Call, String>());
-    // track Calls for which we've already opened the URL (so we open only once)
-    private final java.util.Set<Call> urlOpened = Collections.synchronizedSet(java.util.Collections.newSetFromMap(new WeakHashMap<Call, Boolean>()));
+    // per-call state (calling number, stages fired, URL opened) keyed by Call
+    private final Map<Call, CallRecord> calls = Collections.synchronizedMap(new WeakHashMap<Call, CallRecord>());
+    // every listener in this process, for the diagnostics call-state snapshot
+    private static final java.util.Set<JTAPICallerInfo> LIVE = Collections.synchronizedSet(
+        Collections.newSetFromMap(new WeakHashMap<JTAPICallerInfo, Boolean>()));
 
     public JTAPICallerInfo(String urlTemplate) {
         this(urlTemplate, "CONNECTED");
@@ -37,58 +61,186 @@ public class JTAPICallerInfo implements CallObserver {
 
     public JTAPICallerInfo(String urlTemplate, String trigger, String monitoredAddress) {
         this.urlTemplate = urlTemplate;
-        this.trigger = trigger == null ? "CONNECTED" : trigger.toUpperCase();
+        this.rules = compileTrigger(trigger == null ? "CONNECTED" : trigger);
         this.monitoredAddress = monitoredAddress;
+        this.filter = EventFilter.forRules(this.rules, true, monitoredAddress != null, false);
     }
 
     public JTAPICallerInfo() {
         this(null, "CONNECTED");
     }
+
+    // Cisco JTAPI provider, or the in-process load simulator for provider strings starting with "sim:".
+    static Provider openProvider(String providerString) throws Exception {
+        if (CtiSimulator.isSimulator(providerString)) return CtiSimulator.getProvider(providerString);
+        JtapiPeer peer = JtapiPeerFactory.getJtapiPeer(null);
+        return peer.getProvider(providerString);
+    }
+
+    // Add a call observer with the Cisco extension-event filters applied first.
+    static void subscribe(Address a, CallObserver observer) throws Exception {
+        EventFilter.applyProviderFilters(a);
+        if (observer instanceof JTAPICallerInfo) LIVE.add((JTAPICallerInfo) observer);
+        a.addCallObserver(observer);
+    }
+
+    // Subscription tasks for TaskScope.invokeAll: one per address, failures surface as task exceptions.
+    static java.util.List<Runnable> subscribeTasks(Address[] addresses, CallObserver observer) {
+        java.util.List<Runnable> tasks = new java.util.ArrayList<>(addresses.length);
+        for (Address a : addresses) {
+            tasks.add(() -> {
+                try {
+                    subscribe(a, observer);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Subscribe failed for " + a.getName() + ": " + e.getMessage(), e);
+                }
+            });
+        }
+        return tasks;
+    }
+
+    // Pops, prefetches and subscriptions for this listener run as tasks in this scope (cancelled on Stop).
+    public void setScope(TaskScope scope) {
+        this.scope = scope;
+    }
+
+    // Where pops and prefetches go. BROWSER opens the desktop browser and warms the CRM over HTTP; the load
+    // simulator installs a target that only counts them when this listener is added to one of its addresses.
+    interface PopTarget {
+        String open(CallEv trigger, String url); // how the URL was opened, for the diagnostics recording
+        void prefetch(CallEv trigger, String url, TaskScope scope);
+    }
+
+    static final PopTarget BROWSER = new PopTarget() {
+        @Override
+        public String open(CallEv trigger, String url) {
+            return launchUrl(url);
+        }
+
+        @Override
+        public void prefetch(CallEv trigger, String url, TaskScope scope) {
+            prefetchUrl(url, scope);
+        }
+    };
+
+    void setPopTarget(PopTarget target) {
+        this.popTarget = target;
+    }
+
+    // A trigger argument is either a comma separated list of stages or a full rule spec (contains '=').
+    private static TriggerRules compileTrigger(String trigger) {
+        if (trigger.contains("=")) return TriggerRules.parse(trigger);
+        return TriggerRules.fromTriggers(java.util.Arrays.asList(trigger.toUpperCase().split("\\s*,\\s*")));
+    }
+
+    // Apply URL template, trigger and rate limit from a (reloaded) config to this live listener.
+    public void applyConfig(AppConfig cfg) {
+        this.urlTemplate = cfg.getUrlTemplate();
+        this.rules = cfg.getTriggerRules();
+        this.maxPopsPerMinute = cfg.getMaxPopsPerMinute();
+        this.normalizer = cfg.getNumberNormalizer();
+        this.callStats = cfg.isCallStatsEnabled();
+        this.filter = EventFilter.forConfig(cfg, this.monitoredAddress != null);
+    }
+
     public static void main(String[] args) {
-        if (args.length < 3) {
-            System.out.println("Usage: java JTAPICallerInfo <providerString> <addressName> <durationSeconds>");
+        if (args.length < 3 && !(args.length > 0 && "--config".equals(args[0]))) {
+            System.out.println("Usage: java JTAPICallerInfo <providerString> <addressName> <durationSeconds> [urlTemplate] [trigger]");
+            System.out.println("   or: java JTAPICallerInfo --config [configFile] [durationSeconds]");
             System.out.println("Example providerString: cucm1;login=watson;passwd=secret");
             return;
         }
 
-        String providerString = args[0];
-        String addressName = args[1];
-        int durationSeconds = Integer.parseInt(args[2]);
+        String providerString;
+        String addressName;
+        int durationSeconds;
         String urlTemplate = null;
         String trigger = null;
-        if (args.length > 3) {
-            urlTemplate = args[3];
-        }
-        if (args.length > 4) {
-            trigger = args[4];
+        ConfigStore store = null;
+        if ("--config".equals(args[0])) {
+            // Shared typed config (same file the GUI writes); only the first monitored address is used here
+            store = new ConfigStore(args.length > 1 ? Paths.get(args[1]) : ConfigStore.DEFAULT_FILE);
+            try {
+                store.load();
+            } catch (IOException e) {
+                EventLog.warn("Failed to load config {}: {}", store.getFile(), e.getMessage());
+                EventLog.flush();
+                return;
+            }
+            AppConfig cfg = store.get();
+            if (cfg.getMonitoredAddresses().isEmpty()) {
+                EventLog.warn("Config {} has no monitored address (phone)", store.getFile());
+                EventLog.flush();
+                return;
+            }
+            providerString = cfg.providerString();
+            addressName = cfg.getMonitoredAddresses().get(0);
+            durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE / 1000;
+            urlTemplate = cfg.getUrlTemplate();
+            trigger = cfg.getTriggers().get(0);
+            EventLog.configure(cfg);
+            PopLedger.configure(cfg);
+            pruneOldLogs(cfg.getLogRetentionDays());
+        } else {
+            providerString = args[0];
+            addressName = args[1];
+            durationSeconds = Integer.parseInt(args[2]);
+            if (args.length > 3) {
+                urlTemplate = args[3];
+            }
+            if (args.length > 4) {
+                trigger = args[4];
+            }
         }
+        final ConfigStore storeFinal = store;
+        final java.util.List<JTAPICallerInfo> active = new java.util.concurrent.CopyOnWriteArrayList<>();
+        // everything this run starts (subscriptions, pops, prefetches) belongs to one scope; Ctrl-C cancels it
+        final TaskScope scope = new TaskScope("cli");
+        final java.util.concurrent.CountDownLatch stopSignal = new java.util.concurrent.CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stopSignal.countDown();
+            scope.close();
+            EventLog.flush();
+        }, "cli-shutdown"));
 
         try {
-            JtapiPeer peer = JtapiPeerFactory.getJtapiPeer(null);
             // Obtain provider using the provider string (CUCM details go here).
-            // Example providerString: "cucm1;login=watson;passwd=secret"
-            Provider provider = peer.getProvider(providerString);
+            // Example providerString: "cucm1;login=watson;passwd=secret" (or "sim:addresses=500,rate=20")
+            // everything the listeners feed is ready before the first subscription (same order as the GUI),
+            // so events arriving while ALL mode is still subscribing are not lost
+            AppConfig startCfg = storeFinal != null ? storeFinal.get() : AppConfig.defaults();
+            TriggerRules startRules = storeFinal != null ? startCfg.getTriggerRules() : compileTrigger(trigger == null ? "CONNECTED" : trigger);
+            if (startRules.uses(TriggerRules.Action.TOAST)) {
+                ToastNotifier.prewarm(startCfg.getToastSlots(), startCfg.getToastSeconds());
+            }
+            WebhookDispatcher.configure(startCfg);
+            CallAnalytics.configure(startCfg);
+            Wallboard.configure(startCfg);
+            Diagnostics.configure(startCfg);
+            PopLedger.awaitLoaded();
+            Provider provider = openProvider(providerString);
 
             try {
                 JTAPICallerInfo listener = new JTAPICallerInfo(urlTemplate, trigger, addressName.equalsIgnoreCase("ALL") ? null : addressName);
+                if (storeFinal != null) listener.applyConfig(storeFinal.get());
+                listener.setScope(scope);
+                active.add(listener);
                 if ("ALL".equalsIgnoreCase(addressName)) {
-                    // subscribe to all addresses the provider exposes
+                    // subscribe to all addresses the provider exposes, one virtual-thread task per address
                     Address[] all = provider.getAddresses();
-                    for (Address a : all) {
-                        a.addCallObserver(listener);
-                    }
-                    System.out.println("Listening for calls on ALL addresses (" + all.length + ")");
+                    int ok = scope.invokeAll(subscribeTasks(all, listener), SUBSCRIBE_DEADLINE);
+                    EventLog.info("Listening for calls on ALL addresses ({} of {})", ok, all.length);
                 } else {
                     Address address = provider.getAddress(addressName);
-                    address.addCallObserver(listener);
-                    System.out.println("Listening for calls on address: " + addressName);
+                    subscribe(address, listener);
+                    EventLog.info("Listening for calls on address: {}", addressName);
                 }
             } catch (Exception ex) {
                 // If address not in domain, try a fuzzy search for names that contain the token
-                System.out.println("Failed to subscribe to address '" + addressName + "': " + ex.getMessage());
+                EventLog.warn("Failed to subscribe to address '{}': {}", addressName, ex.getMessage());
                 try {
                     Address[] available = provider.getAddresses();
-                    System.out.println("Provider exposes " + available.length + " addresses. Searching for matches to '" + addressName + "'...");
+                    EventLog.info("Provider exposes {} addresses. Searching for matches to '{}'...", available.length, addressName);
                     java.util.List<Address> matches = new java.util.ArrayList<>();
                     String token = addressName.toLowerCase();
                     for (Address a : available) {
@@ -101,242 +253,522 @@ public class JTAPICallerInfo implements CallObserver {
                         }
                     }
                     if (!matches.isEmpty()) {
-                        System.out.println("Found " + matches.size() + " matching addresses; subscribing to them:");
+                        EventLog.info("Found {} matching addresses; subscribing to them:", matches.size());
                         for (Address m : matches) {
-                            System.out.println(" - " + m.getName());
+                            EventLog.info(" - {}", m.getName());
                                 try {
-                                m.addCallObserver(new JTAPICallerInfo(urlTemplate, trigger, m.getName()));
+                                JTAPICallerInfo fuzzy = new JTAPICallerInfo(urlTemplate, trigger, m.getName());
+                                if (storeFinal != null) fuzzy.applyConfig(storeFinal.get());
+                                fuzzy.setScope(scope);
+                                subscribe(m, fuzzy);
+                                active.add(fuzzy);
                             } catch (Exception subEx) {
-                                System.out.println("Failed to subscribe to " + m.getName() + ": " + subEx.getMessage());
+                                EventLog.warn("Failed to subscribe to {}: {}", m.getName(), subEx.getMessage());
                             }
                         }
                     } else {
-                        System.out.println("No matching addresses found containing '" + addressName + "'. Sample addresses:");
+                        EventLog.info("No matching addresses found containing '{}'. Sample addresses:", addressName);
                         for (int i = 0; i < Math.min(20, available.length); i++) {
-                            System.out.println(" - " + available[i].getName());
+                            EventLog.info(" - {}", available[i].getName());
                         }
                         throw ex;
                     }
                 } catch (Exception e2) {
-                    System.out.println("Also failed to list/provider-search addresses: " + e2.getMessage());
+                    EventLog.warn("Also failed to list/provider-search addresses: {}", e2.getMessage());
                     throw ex;
                 }
             }
 
-            Thread.sleep(durationSeconds * 1000L);
+            if (storeFinal != null) {
+                // hot reload: URL template / trigger / rate limit changes apply without reconnecting
+                storeFinal.addListener(cfg -> {
+                    if (cfg.getTriggerRules().uses(TriggerRules.Action.TOAST)) {
+                        ToastNotifier.prewarm(cfg.getToastSlots(), cfg.getToastSeconds());
+                    }
+                    WebhookDispatcher.configure(cfg);
+                    CallAnalytics.configure(cfg);
+                    Wallboard.configure(cfg);
+                    EventLog.configure(cfg);
+                    PopLedger.configure(cfg);
+                    Diagnostics.configure(cfg);
+                    for (JTAPICallerInfo l : active) l.applyConfig(cfg);
+                    EventLog.info("Config reloaded: trigger={} url={}", cfg.getTriggers(), cfg.getUrlTemplate());
+                });
+                storeFinal.startWatching();
+            }
+            // typing "diag" + Enter writes a diagnostics bundle; with stdin closed (service) this just ends
+            TaskScope.startVirtual("cli-console", () -> {
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in))) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (!line.trim().equalsIgnoreCase("diag")) continue;
+                        try {
+                            Diagnostics.writeBundle();
+                        } catch (IOException e) {
+                            EventLog.warn("Diagnostics bundle failed: {}", e.getMessage());
+                        }
+                    }
+                } catch (IOException ignore) {}
+            });
+
+            stopSignal.await(durationSeconds, java.util.concurrent.TimeUnit.SECONDS);
+            scope.close();
             provider.shutdown();
-            System.out.println("Exiting");
+            for (String line : WebhookDispatcher.stats()) EventLog.info(line);
+            WebhookDispatcher.shutdown();
+            for (String line : CallAnalytics.summary()) EventLog.info(line);
+            for (String line : EventFilter.stats()) EventLog.info(line);
+            CallAnalytics.stopHttp();
+            for (String line : Wallboard.stats()) EventLog.info(line);
+            Wallboard.stop();
+            PopLedger.close();
+            EventLog.info("Exiting");
         } catch (Exception e) {
-            e.printStackTrace();
+            EventLog.error("CLI stopped: {}", e.getMessage(), e);
         }
+        EventLog.flush();
     }
 
     @Override
     public void callChangedEvent(CallEv[] events) {
+        TriggerRules rules = this.rules; // one volatile read per batch; a reload applies from the next batch
+        EventFilter filter = this.filter;
         for (CallEv ev : events) {
-            // Track ConnCreatedEv to capture the initial calling number
-            if (ev instanceof ConnCreatedEv) {
-                Connection conn = ((ConnCreatedEv) ev).getConnection();
-                try {
-                    Address fromAddr = conn.getAddress();
-                    String callingNumber = fromAddr != null ? fromAddr.getName() : null;
-                    if (callingNumber != null) {
-                        Call call = conn.getCall();
-                        callCaller.put(call, callingNumber);
-                        LOGGER.fine("ConnCreatedEv observed caller=" + callingNumber + " call=" + call);
-                    }
-                } catch (Exception e) {
-                    String err = "Failed to handle ConnCreatedEv: " + e.getMessage();
-                    System.out.println(err);
-                    writeLog(err);
+            boolean kept = filter.accept(ev);
+            Diagnostics.received(ev, kept, monitoredAddress);
+            if (!kept) continue;
+            try {
+                handleEvent(ev, rules);
+            } catch (Exception e) {
+                EventLog.error("Failed to handle {}", eventName(ev) + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Classify the event into a call stage (switch on the JTAPI event id), check it concerns the
+    // monitored address, then run the actions compiled for that stage.
+    private void handleEvent(CallEv ev, TriggerRules rules) {
+        Call call = ev.getCall();
+        if (ev.getID() == CallObservationEndedEv.ID) {
+            CallRecord ended = calls.remove(call);
+            if (ended != null) {
+                ToastNotifier.dismiss(ended);
+                // abandoned is only known once the whole call is gone: in ALL mode a line that stops
+                // alerting may just mean the hunt group moved the call on to another line
+                if (callStats && ended.connectedAt == 0 && ended.wasOffered()) {
+                    CallAnalytics.abandoned(ended.lastOffered(), System.currentTimeMillis());
                 }
             }
-            // Open URL on RINGING or CONNECTED depending on trigger.
-            // If a monitoredAddress is specified, prefer Terminal-connection events (TermConnRingingEv / TermConnActiveEv)
-            // so we act only when the monitored terminal actually rings/answers. Otherwise fall back to Connection events.
-            if ("RINGING".equals(this.trigger)) {
-                if (this.monitoredAddress != null && ev instanceof TermConnRingingEv) {
-                    try {
-                        TerminalConnection tc = ((TermConnRingingEv) ev).getTerminalConnection();
-                        Terminal t = tc.getTerminal();
-                        String termName = t != null ? t.getName() : null;
-                        String msg = "TermConnRingingEv terminal=" + termName + " tc=" + tc;
-                        System.out.println(msg);
-                        writeLog(msg);
-                        Connection innerConn = tc.getConnection();
-                        Address innerAddr = innerConn != null ? innerConn.getAddress() : null;
-                        String connName = innerAddr != null ? innerAddr.getName() : null;
-                        boolean addressMatches = false;
-                        try {
-                            addressMatches = (termName != null && this.monitoredAddress != null && termName.equalsIgnoreCase(this.monitoredAddress))
-                                || (connName != null && this.monitoredAddress != null && connName.equalsIgnoreCase(this.monitoredAddress))
-                                || (connName != null && this.monitoredAddress != null && connName.toLowerCase().contains(this.monitoredAddress.toLowerCase()));
-                        } catch (Exception _ignore) { addressMatches = false; }
-                        if (addressMatches) {
-                            Call call = innerConn != null ? innerConn.getCall() : null;
-                            String callingNumber = call != null ? callCaller.get(call) : null;
-                            if (callingNumber == null) {
-                                Address a = innerConn != null ? innerConn.getAddress() : null;
-                                callingNumber = a != null ? a.getName() : null;
-                            }
-                            if (callingNumber != null && this.urlTemplate != null && !this.urlTemplate.isEmpty() && !urlOpened.contains(call)) {
-                                openUrlWithNumber(this.urlTemplate, callingNumber);
-                                urlOpened.add(call);
-                            }
-                        }
-                    } catch (Exception e) {
-                        String err = "Failed to handle TermConnRingingEv: " + e.getMessage();
-                        System.out.println(err);
-                        writeLog(err);
-                    }
-                } else if (ev instanceof ConnAlertingEv) {
-                    Connection conn = ((ConnAlertingEv) ev).getConnection();
-                    try {
-                        Call call = conn.getCall();
-                        String callingNumber = callCaller.get(call);
-                        if (callingNumber == null) {
-                            Address fromAddr = conn.getAddress();
-                            callingNumber = fromAddr != null ? fromAddr.getName() : null;
-                        }
-                        String msg = "ConnAlertingEv - callingNumber=" + callingNumber + " conn=" + conn;
-                        System.out.println(msg);
-                        writeLog(msg);
-                        if (callingNumber != null && this.urlTemplate != null && !this.urlTemplate.isEmpty()) {
-                            try {
-                                if (this.monitoredAddress != null) {
-                                    Address connAddr = conn.getAddress();
-                                    String connName = connAddr != null ? connAddr.getName() : null;
-                                    if (connName == null || !connName.equalsIgnoreCase(this.monitoredAddress)) {
-                                        writeLog("Skipping alerting open: connection address=" + connName + " monitored=" + this.monitoredAddress);
-                                        continue;
-                                    }
-                                }
-                            } catch (Exception _ignore) {}
-                            if (!urlOpened.contains(call)) {
-                                openUrlWithNumber(this.urlTemplate, callingNumber);
-                                urlOpened.add(call);
-                            }
-                        }
-                    } catch (Exception e) {
-                        String err = "Failed to handle ConnAlertingEv: " + e.getMessage();
-                        System.out.println(err);
-                        writeLog(err);
-                    }
+            if (Wallboard.isEnabled()) Wallboard.remove(callId(call));
+            return;
+        }
+        CallRecord rec = record(call);
+        switch (ev.getID()) {
+            case ConnCreatedEv.ID: {
+                // Track ConnCreatedEv to capture the initial calling number (our own line is never the caller)
+                Address fromAddr = ((ConnCreatedEv) ev).getConnection().getAddress();
+                String callingNumber = fromAddr != null ? fromAddr.getName() : null;
+                // only the first one: later ConnCreatedEv are the other lines of a hunt group or a transfer target
+                if (callingNumber != null && rec.caller == null && !callingNumber.equalsIgnoreCase(this.monitoredAddress)) {
+                    rec.caller = callingNumber;
+                    EventLog.debug("ConnCreatedEv observed caller={} call={}", callingNumber, call);
+                    fire(TriggerRules.Stage.CREATED, ev, rec, callingNumber, rules);
                 }
+                return;
+            }
+            case ConnAlertingEv.ID: {
+                // Connection-level alerting also counts as RINGING (the fallback when no terminal event matches)
+                Connection conn = ((ConnAlertingEv) ev).getConnection();
+                if (!connectionMatches(conn, rec)) break;
+                String number = callingNumber(rec, conn);
+                fire(TriggerRules.Stage.ALERTING, ev, rec, number, rules);
+                fire(TriggerRules.Stage.RINGING, ev, rec, number, rules);
+                return;
+            }
+            case TermConnRingingEv.ID: {
+                TerminalConnection tc = ((TermConnRingingEv) ev).getTerminalConnection();
+                if (this.monitoredAddress == null || !terminalMatches(tc)) break;
+                fire(TriggerRules.Stage.RINGING, ev, rec, callingNumber(rec, tc.getConnection()), rules);
+                return;
+            }
+            case ConnConnectedEv.ID: {
+                Connection conn = ((ConnConnectedEv) ev).getConnection();
+                if (!connectionMatches(conn, rec)) break;
+                fire(TriggerRules.Stage.CONNECTED, ev, rec, callingNumber(rec, conn), rules);
+                return;
+            }
+            case TermConnActiveEv.ID: {
+                TerminalConnection tc = ((TermConnActiveEv) ev).getTerminalConnection();
+                if (this.monitoredAddress == null || !terminalMatches(tc)) break;
+                fire(TriggerRules.Stage.CONNECTED, ev, rec, callingNumber(rec, tc.getConnection()), rules);
+                return;
             }
+            case ConnDisconnectedEv.ID: {
+                Connection conn = ((ConnDisconnectedEv) ev).getConnection();
+                if (!connectionMatches(conn, rec)) break;
+                fire(TriggerRules.Stage.DISCONNECTED, ev, rec, callingNumber(rec, conn), rules);
+                return;
+            }
+            default:
+                break;
+        }
+        // Events no stage matched (only reached with logAllEvents or another line's connection)
+        OTHER_EVENTS.log(EventLog.Level.INFO, "Event: {}", ev);
+    }
 
-            if ("CONNECTED".equals(this.trigger)) {
-                if (this.monitoredAddress != null && ev instanceof TermConnActiveEv) {
-                    try {
-                        TerminalConnection tc = ((TermConnActiveEv) ev).getTerminalConnection();
-                        Terminal t = tc.getTerminal();
-                        String termName = t != null ? t.getName() : null;
-                        String msg = "TermConnActiveEv terminal=" + termName + " tc=" + tc;
-                        System.out.println(msg);
-                        writeLog(msg);
-                        Connection innerConn = tc.getConnection();
-                        Address innerAddr = innerConn != null ? innerConn.getAddress() : null;
-                        String connName = innerAddr != null ? innerAddr.getName() : null;
-                        boolean addressMatches = false;
-                        try {
-                            addressMatches = (termName != null && this.monitoredAddress != null && termName.equalsIgnoreCase(this.monitoredAddress))
-                                || (connName != null && this.monitoredAddress != null && connName.equalsIgnoreCase(this.monitoredAddress))
-                                || (connName != null && this.monitoredAddress != null && connName.toLowerCase().contains(this.monitoredAddress.toLowerCase()));
-                        } catch (Exception _ignore) { addressMatches = false; }
-                        if (addressMatches) {
-                            Call call = innerConn != null ? innerConn.getCall() : null;
-                            String callingNumber = call != null ? callCaller.get(call) : null;
-                            if (callingNumber == null) {
-                                Address a = innerConn != null ? innerConn.getAddress() : null;
-                                callingNumber = a != null ? a.getName() : null;
-                            }
-                            if (callingNumber != null && this.urlTemplate != null && !this.urlTemplate.isEmpty()) {
-                                if (!urlOpened.contains(call)) {
-                                    openUrlWithNumber(this.urlTemplate, callingNumber);
-                                    urlOpened.add(call);
-                                } else {
-                                    System.out.println("URL already opened for call: " + call);
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        String err = "Failed to handle TermConnActiveEv: " + e.getMessage();
-                        System.out.println(err);
-                        writeLog(err);
-                    }
-                } else if (ev instanceof ConnConnectedEv) {
-                    Connection conn = ((ConnConnectedEv) ev).getConnection();
-                    try {
-                        Call call = conn.getCall();
-                        String callingNumber = callCaller.get(call);
-                        if (callingNumber == null) {
-                            // fallback to connection address
-                            Address fromAddr = conn.getAddress();
-                            callingNumber = fromAddr != null ? fromAddr.getName() : null;
+    // Run the actions for a stage at most once per call.
+    private void fire(TriggerRules.Stage stage, CallEv ev, CallRecord rec, String number, TriggerRules rules) {
+        long now = System.currentTimeMillis();
+        if (stage == TriggerRules.Stage.CONNECTED && rec.connectedAt == 0) rec.connectedAt = now;
+        if (stage == TriggerRules.Stage.DISCONNECTED) ToastNotifier.dismiss(rec);
+        String address = eventAddress(ev);
+        String e164 = normalizer.normalize(number); // cached per distinct caller
+        if (callStats) recordStats(stage, rec, address, now);
+        if (rec.markPublished(stage)) {
+            if (WebhookDispatcher.isEnabled()) {
+                WebhookDispatcher.publish(WebhookDispatcher.json(
+                    "type", "call", "stage", stage.name(), "callId", callId(ev.getCall()),
+                    "caller", number, "e164", e164, "name", callerName(ev.getCall()), "address", this.monitoredAddress,
+                    "ts", WebhookDispatcher.now()));
+            }
+            if (Wallboard.isEnabled()) {
+                Wallboard.update(callId(ev.getCall()), stage.name(), number, e164, callerName(ev.getCall()), address, now);
+            }
+        }
+        TriggerRules.Action[] actions = rules.actionsFor(stage);
+        if (actions.length == 0 || !rec.markFired(stage)) return;
+        Diagnostics.matched(ev.getCall(), stage, address, number);
+        if (EventLog.isEnabled(EventLog.Level.INFO)) {
+            // guarded: the event name and the e164 suffix would otherwise be built for a disabled level
+            EventLog.log(EventLog.Level.INFO, "{} stage={} callingNumber={} ev={}", eventName(ev), stage,
+                e164 != null && !e164.equals(number) ? number + " e164=" + e164 : number, ev);
+        }
+        String template = this.urlTemplate;
+        boolean haveUrl = number != null && template != null && !template.isEmpty();
+        for (TriggerRules.Action action : actions) {
+            switch (action) {
+                case PREFETCH:
+                    if (haveUrl) popTarget.prefetch(ev, buildUrl(template, number, e164), scope);
+                    break;
+                case TOAST:
+                    // click-to-open honours the once-per-call rule shared with OPEN
+                    final String clickNumber = number;
+                    final TaskScope popScope = scope;
+                    ToastNotifier.show(rec, number, callerName(ev.getCall()), !haveUrl ? null : () -> {
+                        long clickedAt = System.currentTimeMillis();
+                        String clickKey = PopLedger.key(ev.getCall());
+                        if (claimPop(rec, clickKey, clickedAt, clickNumber)) {
+                            if (callStats) CallAnalytics.popped(address, clickedAt);
+                            Diagnostics.dispatched(ev.getCall(), TriggerRules.Action.TOAST);
+                            popScope.fork(() -> {
+                                PopLedger.record(clickKey, clickedAt);
+                                openUrlWithNumber(ev, template, clickNumber, e164);
+                            }, POP_DEADLINE);
                         }
-                        String msg = "ConnConnectedEv - callingNumber=" + callingNumber + " conn=" + conn;
-                        System.out.println(msg);
-                        writeLog(msg);
-                        // open URL only once per Call
-                        if (callingNumber != null && this.urlTemplate != null && !this.urlTemplate.isEmpty()) {
-                            try {
-                                if (this.monitoredAddress != null) {
-                                    Address connAddr = conn.getAddress();
-                                    String connName = connAddr != null ? connAddr.getName() : null;
-                                    if (connName == null || !connName.equalsIgnoreCase(this.monitoredAddress)) {
-                                        writeLog("Skipping connected open: connection address=" + connName + " monitored=" + this.monitoredAddress);
-                                        continue;
-                                    }
-                                }
-                            } catch (Exception _ignore) {}
-                            if (!urlOpened.contains(call)) {
-                                openUrlWithNumber(this.urlTemplate, callingNumber);
-                                urlOpened.add(call);
-                            } else {
-                                System.out.println("URL already opened for call: " + call);
-                            }
+                    });
+                    break;
+                case OPEN:
+                    if (!haveUrl) break;
+                    // the ledger also covers pops made before a restart and by other listeners in this process
+                    final String popKey = PopLedger.key(ev.getCall());
+                    if (claimPop(rec, popKey, now, number)) {
+                        if (callStats) CallAnalytics.popped(address, now);
+                        final String popNumber = number;
+                        // browser launch can block (PowerShell fallback waits); never stall the observer
+                        Diagnostics.dispatched(ev.getCall(), TriggerRules.Action.OPEN);
+                        scope.fork(() -> {
+                            PopLedger.record(popKey, now); // durable before the browser opens
+                            openUrlWithNumber(ev, template, popNumber, e164);
+                        }, POP_DEADLINE);
+                        if (WebhookDispatcher.isEnabled()) {
+                            WebhookDispatcher.publish(WebhookDispatcher.json(
+                                "type", "pop", "stage", stage.name(), "callId", callId(ev.getCall()),
+                                "caller", number, "e164", e164, "address", this.monitoredAddress,
+                                "url", buildUrl(template, number, e164), "ts", WebhookDispatcher.now()));
                         }
-                    } catch (Exception e) {
-                        String err = "Failed to handle ConnConnectedEv: " + e.getMessage();
-                        System.out.println(err);
-                        writeLog(err);
                     }
+                    break;
+                case LOG:
+                    if (!EventLog.isEnabled(EventLog.Level.INFO)) break;
+                    EventLog.log(EventLog.Level.INFO, "Call {} caller={} address={} {}", stage, number, this.monitoredAddress,
+                        "ring=" + (rec.connectedAt > 0 ? (rec.connectedAt - rec.createdAt) : now - rec.createdAt) + "ms"
+                        + (rec.connectedAt > 0 ? " talk=" + (now - rec.connectedAt) + "ms" : " answered=false")
+                        + " popped=" + rec.opened.get());
+                    break;
+            }
+        }
+    }
+
+    // Feed the analytics windows per address: offered once for every line the call alerts on, answered
+    // (with that line's ring time) on the line that connected. Abandoned is counted at call end against
+    // the last line that alerted (see handleEvent).
+    private static void recordStats(TriggerRules.Stage stage, CallRecord rec, String address, long now) {
+        switch (stage) {
+            case ALERTING:
+            case RINGING:
+                if (rec.offer(address, now)) CallAnalytics.offered(address, now);
+                break;
+            case CONNECTED:
+                if (rec.markAnswered()) {
+                    long offeredAt = rec.offeredAt(address);
+                    CallAnalytics.answered(address, offeredAt > 0 ? now - offeredAt : -1, now);
                 }
-            } else if (ev instanceof CallObservationEndedEv) {
-                try {
-                    Call call = ((CallObservationEndedEv) ev).getCall();
-                    callCaller.remove(call);
-                    urlOpened.remove(call);
-                } catch (Exception ignore) {}
-            } else {
-                // Log other events at DEBUG level
-                String other = "Event: " + ev;
-                System.out.println(other);
-                writeLog(other);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // The address a stage happened on: the monitored address, or in ALL mode the event's connection address.
+    private String eventAddress(CallEv ev) {
+        if (this.monitoredAddress != null) return this.monitoredAddress;
+        try {
+            Connection conn = null;
+            if (ev instanceof ConnEv) conn = ((ConnEv) ev).getConnection();
+            else if (ev instanceof TermConnEv) conn = ((TermConnEv) ev).getTerminalConnection().getConnection();
+            Address a = conn != null ? conn.getAddress() : null;
+            return a != null ? a.getName() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private CallRecord record(Call call) {
+        synchronized (calls) {
+            CallRecord rec = calls.get(call);
+            if (rec == null) {
+                rec = new CallRecord();
+                calls.put(call, rec);
             }
+            return rec;
         }
     }
 
-    private void openUrlWithNumber(String template, String number) {
+    // Calling number captured at CREATED, else the connection's own address (legacy fallback).
+    private static String callingNumber(CallRecord rec, Connection conn) {
+        if (rec.caller != null) return rec.caller;
+        Address a = conn != null ? conn.getAddress() : null;
+        return a != null ? a.getName() : null;
+    }
+
+    // CUCM global call id ("callManagerId/globalCallId") when available; stable across observers.
+    static String callId(Call call) {
         try {
-            String encoded = URLEncoder.encode(number, StandardCharsets.UTF_8.toString());
-            String url = template.replace("{number}", encoded).replace("%s", encoded);
-            // If template does not contain a placeholder, append the number
-            if (!template.contains("{number}") && !template.contains("%s")) {
-                if (!url.endsWith("/") && !url.contains("?")) url = url + "/" + encoded;
-                else url = url + encoded;
+            if (call instanceof CiscoCall) {
+                com.cisco.jtapi.extensions.CiscoCallID id = ((CiscoCall) call).getCallID();
+                return id.getCallManagerID() + "/" + id.getGlobalCallID();
+            }
+        } catch (Exception ignore) {}
+        return String.valueOf(call);
+    }
+
+    // Enriched caller name from CUCM (directory / display name) when the provider supplies one.
+    private static String callerName(Call call) {
+        try {
+            if (call instanceof CiscoCall) return ((CiscoCall) call).getCurrentCallingPartyDisplayName();
+        } catch (Exception ignore) {}
+        return null;
+    }
+
+    // Connection events: any line but the calling party's own when unmonitored, else the monitored address exactly.
+    private boolean connectionMatches(Connection conn, CallRecord rec) {
+        Address connAddr = conn != null ? conn.getAddress() : null;
+        String connName = connAddr != null ? connAddr.getName() : null;
+        if (this.monitoredAddress == null) {
+            // the caller's connection goes CONNECTED at call setup; that is not the call being answered
+            return connName == null || rec.caller == null || !connName.equalsIgnoreCase(rec.caller);
+        }
+        if (connName == null || !connName.equalsIgnoreCase(this.monitoredAddress)) {
+            SKIPPED.log(EventLog.Level.DEBUG, "Skipping event: connection address={} monitored={}", connName, this.monitoredAddress);
+            return false;
+        }
+        return true;
+    }
+
+    // Terminal-connection events: terminal name, or the line name equal to / containing the monitored address.
+    private boolean terminalMatches(TerminalConnection tc) {
+        try {
+            Terminal t = tc.getTerminal();
+            String termName = t != null ? t.getName() : null;
+            Connection innerConn = tc.getConnection();
+            Address innerAddr = innerConn != null ? innerConn.getAddress() : null;
+            String connName = innerAddr != null ? innerAddr.getName() : null;
+            return (termName != null && termName.equalsIgnoreCase(this.monitoredAddress))
+                || (connName != null && connName.equalsIgnoreCase(this.monitoredAddress))
+                || (connName != null && connName.toLowerCase().contains(this.monitoredAddress.toLowerCase()));
+        } catch (Exception _ignore) {
+            return false;
+        }
+    }
+
+    private static String eventName(CallEv ev) {
+        String n = ev.getClass().getSimpleName();
+        // Cisco implementation classes are named like ConnCreatedEvImpl
+        return n.endsWith("Impl") ? n.substring(0, n.length() - 4) : n;
+    }
+
+    // Per-call state; replaces the separate caller / urlOpened maps.
+    private static final class CallRecord {
+        final long createdAt = System.currentTimeMillis();
+        volatile String caller;
+        volatile long connectedAt;
+        final java.util.concurrent.atomic.AtomicBoolean opened = new java.util.concurrent.atomic.AtomicBoolean();
+        private int firedStages; // bit per TriggerRules.Stage
+        private int publishedStages;
+        private Map<String, Long> offered; // address -> when it started alerting; usually one entry
+        private String lastOffered;
+        private boolean answered;
+
+        // True the first time the call alerts on this address.
+        synchronized boolean offer(String address, long now) {
+            if (offered == null) offered = new java.util.HashMap<>(4);
+            if (offered.putIfAbsent(address, now) != null) return false;
+            lastOffered = address;
+            return true;
+        }
+
+        synchronized boolean wasOffered() {
+            return offered != null;
+        }
+
+        synchronized String lastOffered() {
+            return lastOffered;
+        }
+
+        synchronized long offeredAt(String address) {
+            Long at = offered != null ? offered.get(address) : null;
+            return at != null ? at : 0;
+        }
+
+        synchronized boolean markAnswered() {
+            if (answered) return false;
+            answered = true;
+            return true;
+        }
+
+        synchronized boolean markFired(TriggerRules.Stage stage) {
+            int bit = 1 << stage.ordinal();
+            if ((firedStages & bit) != 0) return false;
+            firedStages |= bit;
+            return true;
+        }
+
+        // lifecycle events go out once per stage whether or not a rule acts on the stage
+        synchronized boolean markPublished(TriggerRules.Stage stage) {
+            int bit = 1 << stage.ordinal();
+            if ((publishedStages & bit) != 0) return false;
+            publishedStages |= bit;
+            return true;
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder sb = new StringBuilder("caller=").append(caller)
+                .append(" age=").append(System.currentTimeMillis() - createdAt).append("ms")
+                .append(" connected=").append(connectedAt > 0).append(" opened=").append(opened.get())
+                .append(" published=");
+            for (TriggerRules.Stage s : TriggerRules.Stage.values()) {
+                if ((publishedStages & (1 << s.ordinal())) != 0) sb.append(s).append(',');
+            }
+            sb.append(" fired=");
+            for (TriggerRules.Stage s : TriggerRules.Stage.values()) {
+                if ((firedStages & (1 << s.ordinal())) != 0) sb.append(s).append(',');
             }
+            return sb.toString();
+        }
+    }
+    // Once-per-call guard shared by OPEN and a toast click. The record's flag is taken with a CAS, so a click
+    // racing the OPEN stage cannot pop twice even with the ledger off. The ledger claim covers earlier runs,
+    // and the rate limit is checked last: a pop it drops gives both claims back, so it is neither recorded
+    // as popped nor counted, and a later click can still open it.
+    private boolean claimPop(CallRecord rec, String key, long now, String number) {
+        if (!rec.opened.compareAndSet(false, true) || !PopLedger.claim(key, now)) {
+            EventLog.info("URL already opened for call with number {}", number);
+            return false;
+        }
+        if (!allowPop()) {
+            PopLedger.release(key, now);
+            rec.opened.set(false);
+            EventLog.info("Pop suppressed by rate limit ({}/min) for number {}", maxPopsPerMinute, number);
+            return false;
+        }
+        return true;
+    }
+
+    // Simple fixed one-minute window; protects the desktop from a flood of browser tabs.
+    private synchronized boolean allowPop() {
+        int limit = this.maxPopsPerMinute;
+        if (limit <= 0) return true;
+        long now = System.currentTimeMillis();
+        if (now - popWindowStart >= 60_000L) {
+            popWindowStart = now;
+            popsInWindow = 0;
+        }
+        return ++popsInWindow <= limit;
+    }
+
+    // {number}, {raw} and %s are the number as CUCM reported it; {e164} is the dial-plan normalised form.
+    static String buildUrl(String template, String number, String e164) {
+        String encoded = URLEncoder.encode(number, StandardCharsets.UTF_8);
+        String encodedE164 = URLEncoder.encode(e164 != null ? e164 : number, StandardCharsets.UTF_8);
+        String url = template.replace("{number}", encoded).replace("{raw}", encoded)
+            .replace("{e164}", encodedE164).replace("%s", encoded);
+        // If template does not contain a placeholder, append the number
+        if (!template.contains("{number}") && !template.contains("{raw}") && !template.contains("{e164}")
+                && !template.contains("%s")) {
+            if (!url.endsWith("/") && !url.contains("?")) url = url + "/" + encoded;
+            else url = url + encoded;
+        }
+        return url;
+    }
+
+    // Fire-and-forget GET so the CRM has the caller's record warm by the time the pop opens.
+    // Runs without the browser's session cookies, so it only helps server-side caches. A blocking send in a
+    // scope task, so Stop (or the deadline) interrupts it and the client aborts the exchange.
+    private static void prefetchUrl(String url, TaskScope scope) {
+        scope.fork(() -> {
+            try {
+                HttpRequest req = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(10)).GET().build();
+                HttpResponse<Void> resp = PrefetchClient.CLIENT.send(req, HttpResponse.BodyHandlers.discarding());
+                EventLog.debug("Prefetched {} status={}", url, resp.statusCode());
+            } catch (InterruptedException e) {
+                EventLog.debug("Prefetch cancelled for {}", url);
+            } catch (Exception e) {
+                EventLog.warn("Prefetch failed for {}: {}", url, e.getMessage());
+            }
+        }, PREFETCH_DEADLINE);
+    }
+
+    // Lazily created on first PREFETCH so listeners that never prefetch don't start HTTP threads.
+    private static final class PrefetchClient {
+        static final HttpClient CLIENT = HttpClient.newBuilder()
+            .executor(java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor())
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }
+
+    // trigger is the event that caused the pop (the simulator measures event-to-pop latency from it).
+    private void openUrlWithNumber(CallEv trigger, String template, String number, String e164) {
+        Diagnostics.PopLaunched jfr = Diagnostics.launching();
+        String url = buildUrl(template, number, e164);
+        String method = popTarget.open(trigger, url);
+        Diagnostics.launched(jfr, trigger.getCall(), method, url);
+    }
+
+    // Returns how the pop went, for the diagnostics recording.
+    private static String launchUrl(String url) {
+        try {
             // Try to open via Desktop.browse first
-            writeLog("Opening URL: " + url);
+            EventLog.info("Opening URL: {}", url);
             try {
                 if (Desktop.isDesktopSupported()) {
                     Desktop.getDesktop().browse(new URI(url));
-                    LOGGER.info("Opened URL via Desktop: " + url);
-                    return;
+                    EventLog.debug("Opened URL via Desktop: {}", url);
+                    return "desktop";
                 }
             } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Desktop browse failed: " + e.getMessage(), e);
-                writeLog("Desktop browse failed: " + e.getMessage());
+                EventLog.warn("Desktop browse failed: {}", e.getMessage());
             }
 
             // Fallback: use PowerShell Start-Process to open the URL on Windows
@@ -352,34 +784,53 @@ public class JTAPICallerInfo implements CallObserver {
                     while ((line = br.readLine()) != null) {
                         out.append(line).append('\n');
                     }
-                    if (out.length() > 0) writeLog("PowerShell output: " + out.toString().trim());
+                    if (out.length() > 0) EventLog.info("PowerShell output: {}", out.toString().trim());
                 }
                 int rc = p.waitFor();
                 if (rc == 0) {
-                    LOGGER.info("Opened URL via PowerShell: " + url);
-                } else {
-                    LOGGER.warning("PowerShell Start-Process returned exit code " + rc + " for URL: " + url);
+                    EventLog.debug("Opened URL via PowerShell: {}", url);
+                    return "powershell";
                 }
+                EventLog.warn("PowerShell Start-Process returned exit code {} for URL: {}", rc, url);
             } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "PowerShell fallback failed: " + e.getMessage(), e);
-                writeLog("PowerShell fallback failed: " + e.getMessage());
+                EventLog.error("PowerShell fallback failed: {}", e.getMessage(), e);
             }
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Failed to open URL: " + e.getMessage(), e);
+            EventLog.error("Failed to open URL: {}", e.getMessage(), e);
         }
+        return "failed";
     }
 
-    private void writeLog(String line) {
-        File logFile = new File(System.getProperty("user.dir"), "call-events.log");
-        String ts = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-        try (FileWriter fw = new FileWriter(logFile, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            out.println(ts + " " + line);
-        } catch (IOException e) {
-            // If logging fails, print to stderr
-            System.err.println("Failed to write log: " + e.getMessage());
+    // One line per call held by any listener in this process (diagnostics bundle).
+    static java.util.List<String> callStates() {
+        java.util.List<String> out = new java.util.ArrayList<>();
+        JTAPICallerInfo[] listeners;
+        synchronized (LIVE) {
+            listeners = LIVE.toArray(new JTAPICallerInfo[0]);
         }
+        for (JTAPICallerInfo l : listeners) {
+            String who = "listener=" + (l.monitoredAddress == null ? "ALL" : l.monitoredAddress);
+            synchronized (l.calls) {
+                if (l.calls.isEmpty()) out.add(who + " (no calls)");
+                for (Map.Entry<Call, CallRecord> e : l.calls.entrySet()) {
+                    out.add(who + " call=" + callId(e.getKey()) + " " + e.getValue());
+                }
+            }
+        }
+        return out;
+    }
+
+    // Delete rolled call-events-<date>.log files older than the configured retention.
+    public static void pruneOldLogs(int retentionDays) {
+        Path dir = Paths.get(System.getProperty("user.dir"));
+        long cutoff = System.currentTimeMillis() - retentionDays * 86_400_000L;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "call-events-*.log")) {
+            for (Path p : ds) {
+                try {
+                    if (Files.getLastModifiedTime(p).toMillis() < cutoff) Files.deleteIfExists(p);
+                } catch (Exception ignore) {}
+            }
+        } catch (Exception ignore) {}
     }
     // GUI popup removed for production; use system notifications or external caller if needed.
 }
@@ -17,20 +17,47 @@ public class JTAPIGui {
     private JTextField cucmHostField;
     private JTextField urlField;
     private JComboBox<String> triggerCombo;
+    private JTextField rulesField;
     private JCheckBox rememberMeCheck;
     private JButton startBtn;
     private JButton stopBtn;
     private JLabel statusLabel;
     private JTabbedPane tabbedPane;
+    private JPanel callPanel; // built on first selection of the Call Settings tab
+    private JPanel statsPanel; // built on first selection of the Statistics tab
+    private TrayIcon trayIcon;
+    private final boolean trayMode;
 
     private Provider provider;
-    private Thread workerThread;
-    private JTAPICallerInfo listener;
+    // owns the connect/subscribe work and every pop started by this Start; Stop closes it
+    private TaskScope session;
+    // listeners attached to the current provider; URL template / trigger changes are pushed to them live
+    private final java.util.List<JTAPICallerInfo> activeListeners = new java.util.concurrent.CopyOnWriteArrayList<>();
 
-    private static final String CONFIG_DIR = System.getProperty("user.home") + "/.jtapi_config";
-    private static final String CONFIG_FILE = CONFIG_DIR + "/config.properties";
+    private final ConfigStore configStore;
+    private boolean reloadingConfig; // EDT only; stops a reload from echoing back as a user edit
+
+    public JTAPIGui(boolean trayMode, ConfigStore configStore) {
+        this.trayMode = trayMode;
+        this.configStore = configStore;
+    }
 
     public static void main(String[] args) {
+        // --tray: start minimised to the system tray and connect with saved settings (fast-start path)
+        boolean tray = false;
+        for (String a : args) {
+            if ("--tray".equalsIgnoreCase(a)) tray = true;
+        }
+        final boolean trayFinal = tray;
+        // Read settings on the main thread so the EDT never waits on disk
+        ConfigStore store = new ConfigStore(ConfigStore.DEFAULT_FILE);
+        String loadError = null;
+        try {
+            store.load();
+        } catch (IOException e) {
+            loadError = e.getMessage();
+        }
+        final String loadErrorFinal = loadError;
         try {
             for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
                 if ("Nimbus".equals(info.getName())) {
@@ -39,21 +66,23 @@ public class JTAPIGui {
                 }
             }
         } catch (Exception ignored) {}
-        SwingUtilities.invokeLater(() -> new JTAPIGui().buildAndShow());
+        SwingUtilities.invokeLater(() -> {
+            JTAPIGui gui = new JTAPIGui(trayFinal, store);
+            gui.buildAndShow();
+            if (loadErrorFinal != null) {
+                gui.updateStatus("Disconnected: Failed to load settings - " + loadErrorFinal, new Color(220, 53, 69));
+            }
+        });
     }
 
     private void buildAndShow() {
+        StartupMetrics.mark("EDT ready");
         frame = new JFrame("LKQ CTI Popup");
-        // Load application icons (look for resources or working-dir files)
-        java.util.List<Image> icons = loadAppIcons();
-        if (icons != null && !icons.isEmpty()) {
-            frame.setIconImages(icons);
-            try {
-                // Taskbar API (Java 9+) improves taskbar icon on Windows
-                java.awt.Taskbar tb = java.awt.Taskbar.getTaskbar();
-                tb.setIconImage(icons.get(0));
-            } catch (Throwable ignored) {}
-        }
+        // Load application icons off the EDT (image decoding is slow on thin clients) and apply when ready
+        TaskScope.startVirtual("icon-loader", () -> {
+            java.util.List<Image> icons = loadAppIcons();
+            if (icons != null && !icons.isEmpty()) SwingUtilities.invokeLater(() -> applyAppIcons(icons));
+        });
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         frame.setLayout(new BorderLayout());
         frame.getContentPane().setBackground(new Color(34, 34, 34)); // Dark gray background
@@ -67,21 +96,43 @@ public class JTAPIGui {
             BorderFactory.createEmptyBorder(5, 5, 5, 5)
         ));
         phoneField = createTextField("Enter Phone#", "");
-        cucmHostField = createTextField("Enter CUCM Host", "ccmaur1vpub.lkqvoice.com");
-        urlField = createTextField("Enter URL Template (use {number})", "https://salesassistant.lkqcorp.com/customers/{number}");
-        triggerCombo = new JComboBox<>(new String[]{"RINGING", "CONNECTED"});
+        cucmHostField = createTextField("Enter CUCM Host (comma separate backup CTI Managers)", AppConfig.DEFAULT_HOST);
+        urlField = createTextField("Enter URL Template (use {number} or {e164})", AppConfig.DEFAULT_URL_TEMPLATE);
+        triggerCombo = new JComboBox<>(new String[]{"CREATED", "ALERTING", "RINGING", "CONNECTED"});
         triggerCombo.setSelectedItem("CONNECTED");
         triggerCombo.setBackground(Color.WHITE);
         triggerCombo.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createLineBorder(new Color(150, 150, 150), 1, true),
             BorderFactory.createEmptyBorder(5, 5, 5, 5)
         ));
+        // optional per-stage actions; when set they replace the single trigger above
+        rulesField = createTextField("Trigger rules, e.g. CREATED=PREFETCH; RINGING=OPEN; DISCONNECTED=LOG (blank = open on trigger)", "");
         rememberMeCheck = new JCheckBox("Remember Me");
         rememberMeCheck.setBackground(Color.WHITE);
         rememberMeCheck.setFont(new Font("SansSerif", Font.PLAIN, 14));
 
         // Load saved settings after initializing fields
         loadSavedSettings();
+        phoneField.setToolTipText("Enter Phone# (comma separate several, or ALL)");
+
+        // URL template and trigger stay editable while connected and apply without a reconnect
+        urlField.addActionListener(e -> applyLiveSettings());
+        urlField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                applyLiveSettings();
+            }
+        });
+        triggerCombo.addActionListener(e -> applyLiveSettings());
+        rulesField.addActionListener(e -> applyLiveSettings());
+        rulesField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                applyLiveSettings();
+            }
+        });
+        configStore.addListener(cfg -> SwingUtilities.invokeLater(() -> onConfigReloaded(cfg)));
+        configStore.startWatching();
 
     // left sidebar removed per user request
 
@@ -100,12 +151,29 @@ public class JTAPIGui {
         connPanel.add(connSection);
         tabbedPane.addTab("Connection", connPanel);
 
-        // Call Settings tab
-        JPanel callPanel = createContentPanel();
-        addFieldToPanel(callPanel, "CUCM Host", cucmHostField);
-        addFieldToPanel(callPanel, "URL Template", urlField);
-        addFieldToPanel(callPanel, "Trigger Event", triggerCombo);
-        tabbedPane.addTab("Call Settings", callPanel);
+        // Call Settings tab: not visible at startup, so lay it out only when first selected
+        tabbedPane.addTab("Call Settings", new JPanel());
+        final int callTabIndex = tabbedPane.getTabCount() - 1;
+        tabbedPane.addChangeListener(e -> {
+            if (callPanel == null && tabbedPane.getSelectedIndex() == callTabIndex) {
+                callPanel = createContentPanel();
+                addFieldToPanel(callPanel, "CUCM Host", cucmHostField);
+                addFieldToPanel(callPanel, "URL Template", urlField);
+                addFieldToPanel(callPanel, "Trigger Event", triggerCombo);
+                addFieldToPanel(callPanel, "Trigger Rules", rulesField);
+                tabbedPane.setComponentAt(callTabIndex, callPanel);
+            }
+        });
+
+        // Statistics tab: per-address call analytics, refreshed only while the tab is showing
+        tabbedPane.addTab("Statistics", new JPanel());
+        final int statsTabIndex = tabbedPane.getTabCount() - 1;
+        tabbedPane.addChangeListener(e -> {
+            if (statsPanel == null && tabbedPane.getSelectedIndex() == statsTabIndex) {
+                statsPanel = createStatsPanel(() -> tabbedPane.getSelectedIndex() == statsTabIndex && frame.isShowing());
+                tabbedPane.setComponentAt(statsTabIndex, statsPanel);
+            }
+        });
 
         frame.add(tabbedPane, BorderLayout.CENTER);
 
@@ -134,13 +202,22 @@ public class JTAPIGui {
 
         // Action listeners
         startBtn.addActionListener(e -> {
-            System.out.println("Start clicked");
+            EventLog.debug("{} clicked", "Start");
             startListener();
         });
         stopBtn.addActionListener(e -> {
-            System.out.println("Stop clicked");
+            EventLog.debug("{} clicked", "Stop");
             stopListener();
         });
+        // hidden support menu (Ctrl+Shift+D): not something agents should stumble on
+        frame.getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+            .put(KeyStroke.getKeyStroke(KeyEvent.VK_D, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "diagnostics");
+        frame.getRootPane().getActionMap().put("diagnostics", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showDiagnosticsMenu();
+            }
+        });
 
         // Input validation listener
         ActionListener validateInputs = e -> {
@@ -155,48 +232,182 @@ public class JTAPIGui {
         frame.pack();
         frame.setMinimumSize(new Dimension(800, 600));
         frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
-    // start background cleaner to remove unwanted CiscoJtapi*.log files
-    startLogCleaner();
+        // every subsystem is configured before a listener can start, so the first call event finds them ready
+        prewarmToasts(configStore.get());
+        WebhookDispatcher.configure(configStore.get());
+        CallAnalytics.configure(configStore.get());
+        Wallboard.configure(configStore.get());
+        EventLog.configure(configStore.get());
+        PopLedger.configure(configStore.get()); // loads in the background; startListener waits for it
+        Diagnostics.configure(configStore.get());
+        // In tray mode with complete saved settings, stay hidden and connect straight away
+        boolean autoConnect = trayMode && rememberMeCheck.isSelected()
+            && !userField.getText().trim().isEmpty() && !cucmHostField.getText().trim().isEmpty()
+            && installTrayIcon();
+        if (autoConnect) {
+            frame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+            StartupMetrics.mark("UI ready (tray)");
+            startListener();
+        } else {
+            frame.setVisible(true);
+            StartupMetrics.mark("UI ready");
+        }
+        // per-endpoint webhook queue depth / latency (and simulator pop stats) as a tooltip on the status line
+        new javax.swing.Timer(5000, e -> {
+            java.util.List<String> stats = new java.util.ArrayList<>(WebhookDispatcher.stats());
+            stats.addAll(CtiSimulator.stats());
+            stats.addAll(Wallboard.stats());
+            stats.add(EventFilter.summary());
+            statusLabel.setToolTipText(stats.isEmpty() ? null : "<html>" + String.join("<br>", stats) + "</html>");
+        }).start();
+        // start background cleaner to remove unwanted CiscoJtapi*.log files
+        startLogCleaner();
     }
 
-    private void loadSavedSettings() {
-        Properties props = new Properties();
-        File configFile = new File(CONFIG_FILE);
-        if (configFile.exists()) {
-            try (FileInputStream fis = new FileInputStream(configFile)) {
-                props.load(fis);
-                if (userField != null) userField.setText(props.getProperty("username", ""));
-                if (passField != null) passField.setText(props.getProperty("password", ""));
-                if (cucmHostField != null) cucmHostField.setText(props.getProperty("cucmHost", ""));
-                if (phoneField != null) phoneField.setText(props.getProperty("phone", ""));
-                if (props.containsKey("username") || props.containsKey("password") || props.containsKey("cucmHost") || props.containsKey("phone")) {
-                    rememberMeCheck.setSelected(true);
+    private void showDiagnosticsMenu() {
+        JPopupMenu menu = new JPopupMenu("Support");
+        JMenuItem bundle = new JMenuItem("Create diagnostics bundle");
+        bundle.addActionListener(e -> {
+            String before = statusLabel.getText();
+            statusLabel.setText("Collecting diagnostics...");
+            TaskScope.startVirtual("diagnostics", () -> {
+                String msg;
+                try {
+                    msg = "Diagnostics saved to\n" + Diagnostics.writeBundle();
+                } catch (Exception ex) {
+                    msg = "Diagnostics bundle failed: " + ex.getMessage();
                 }
-            } catch (IOException e) {
-                updateStatus("Disconnected: Failed to load settings - " + e.getMessage(), new Color(220, 53, 69));
-            }
+                final String text = msg;
+                SwingUtilities.invokeLater(() -> {
+                    statusLabel.setText(before);
+                    JOptionPane.showMessageDialog(frame, text, "Diagnostics", JOptionPane.INFORMATION_MESSAGE);
+                });
+            });
+        });
+        menu.add(bundle);
+        menu.show(statusLabel, 0, 0);
+    }
+
+    private void applyAppIcons(java.util.List<Image> icons) {
+        frame.setIconImages(icons);
+        try {
+            // Taskbar API (Java 9+) improves taskbar icon on Windows
+            java.awt.Taskbar tb = java.awt.Taskbar.getTaskbar();
+            tb.setIconImage(icons.get(0));
+        } catch (Throwable ignored) {}
+        if (trayIcon != null) trayIcon.setImage(icons.get(icons.size() - 1));
+    }
+
+    // Add a tray icon with Open/Exit actions. Returns false if the platform has no system tray.
+    private boolean installTrayIcon() {
+        if (!SystemTray.isSupported()) return false;
+        PopupMenu menu = new PopupMenu();
+        MenuItem openItem = new MenuItem("Open");
+        openItem.addActionListener(e -> showFrame());
+        MenuItem exitItem = new MenuItem("Exit");
+        exitItem.addActionListener(e -> SwingUtilities.invokeLater(() -> {
+            if (stopBtn.isEnabled()) stopListener();
+            SystemTray.getSystemTray().remove(trayIcon);
+            frame.dispose();
+            EventLog.flush();
+            System.exit(0);
+        }));
+        menu.add(openItem);
+        menu.add(exitItem);
+        // placeholder image until the icon loader finishes
+        trayIcon = new TrayIcon(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB), "LKQ CTI Popup", menu);
+        trayIcon.setImageAutoSize(true);
+        trayIcon.addActionListener(e -> showFrame());
+        try {
+            SystemTray.getSystemTray().add(trayIcon);
+            return true;
+        } catch (AWTException e) {
+            trayIcon = null;
+            return false;
         }
     }
 
+    private void showFrame() {
+        SwingUtilities.invokeLater(() -> {
+            frame.setVisible(true);
+            frame.setExtendedState(JFrame.NORMAL);
+            frame.toFront();
+        });
+    }
+
+    // Fill the form from the config loaded at startup (no disk I/O here; main() already read it).
+    private void loadSavedSettings() {
+        AppConfig cfg = configStore.get();
+        userField.setText(cfg.getUsername());
+        passField.setText(cfg.getPassword());
+        cucmHostField.setText(String.join(",", cfg.getProviderHosts()));
+        phoneField.setText(String.join(",", cfg.getMonitoredAddresses()));
+        urlField.setText(cfg.getUrlTemplate());
+        triggerCombo.setSelectedItem(cfg.getTriggers().get(0));
+        rulesField.setText(cfg.getRules());
+        rememberMeCheck.setSelected(cfg.isRememberMe());
+    }
+
+    // Snapshot of the form on top of the stored config (keeps keys the GUI has no fields for).
+    private AppConfig currentFormConfig() {
+        Properties props = configStore.get().toProperties();
+        props.setProperty("username", userField.getText().trim());
+        props.setProperty("password", new String(passField.getPassword()));
+        props.setProperty("cucmHost", cucmHostField.getText().trim());
+        props.setProperty("phone", phoneField.getText().trim());
+        props.setProperty("urlTemplate", urlField.getText().trim());
+        // the combo shows the first trigger only; keep a multi-trigger list from the file unless it was changed
+        String selected = triggerCombo.getSelectedItem() != null ? triggerCombo.getSelectedItem().toString() : AppConfig.DEFAULT_TRIGGER;
+        if (!selected.equals(configStore.get().getTriggers().get(0))) props.setProperty("trigger", selected);
+        props.setProperty("rules", rulesField.getText().trim());
+        props.setProperty("rememberMe", String.valueOf(rememberMeCheck.isSelected()));
+        return new AppConfig(props);
+    }
+
     private void saveSettings() {
         if (!rememberMeCheck.isSelected()) return;
-        Properties props = new Properties();
-        if (userField != null) props.setProperty("username", userField.getText().trim());
-        if (passField != null) props.setProperty("password", new String(passField.getPassword()));
-        if (cucmHostField != null) props.setProperty("cucmHost", cucmHostField.getText().trim());
-    if (phoneField != null) props.setProperty("phone", phoneField.getText().trim());
-
-        File configDir = new File(CONFIG_DIR);
-        if (!configDir.exists()) {
-            configDir.mkdirs();
+        configStore.save(currentFormConfig()); // written on the config-io thread
+    }
+
+    // URL template / trigger edited in the form: push to live listeners, persist if remembered.
+    private void applyLiveSettings() {
+        if (reloadingConfig) return;
+        AppConfig cfg = currentFormConfig();
+        prewarmToasts(cfg);
+        for (JTAPICallerInfo l : activeListeners) l.applyConfig(cfg);
+        if (rememberMeCheck.isSelected() && !cfg.equals(configStore.get())) configStore.save(cfg);
+    }
+
+    // Build the toast window pool once any rule uses TOAST, so the first toast shows within milliseconds.
+    private void prewarmToasts(AppConfig cfg) {
+        if (cfg.getTriggerRules().uses(TriggerRules.Action.TOAST)) {
+            ToastNotifier.prewarm(cfg.getToastSlots(), cfg.getToastSeconds());
         }
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(CONFIG_FILE)) {
-            props.store(fos, "JTAPI GUI Settings");
-        } catch (IOException e) {
-            updateStatus("Disconnected: Failed to save settings - " + e.getMessage(), new Color(220, 53, 69));
+    // config.properties changed on disk (another instance, admin push, manual edit).
+    private void onConfigReloaded(AppConfig cfg) {
+        reloadingConfig = true;
+        try {
+            urlField.setText(cfg.getUrlTemplate());
+            triggerCombo.setSelectedItem(cfg.getTriggers().get(0));
+            rulesField.setText(cfg.getRules());
+            prewarmToasts(cfg);
+            WebhookDispatcher.configure(cfg);
+            CallAnalytics.configure(cfg);
+            Wallboard.configure(cfg);
+            EventLog.configure(cfg);
+            PopLedger.configure(cfg);
+            Diagnostics.configure(cfg);
+            for (JTAPICallerInfo l : activeListeners) l.applyConfig(cfg);
+            if (activeListeners.isEmpty()) {
+                // connection settings only take effect on the next Start
+                loadSavedSettings();
+            }
+        } finally {
+            reloadingConfig = false;
         }
+        EventLog.info("Settings reloaded from {}", configStore.getFile());
     }
 
     private JButton createSidebarButton(String text, String icon) {
@@ -241,6 +452,59 @@ public class JTAPIGui {
         return button;
     }
 
+    // Table of offered / answered / abandoned / pops / ring time per address for the chosen window.
+    private JPanel createStatsPanel(java.util.function.BooleanSupplier visible) {
+        JPanel panel = new JPanel(new BorderLayout(0, 10));
+        panel.setBackground(Color.WHITE);
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+        JComboBox<CallAnalytics.Window> windowCombo = new JComboBox<>(CallAnalytics.Window.values());
+        windowCombo.setSelectedItem(CallAnalytics.Window.M15);
+        windowCombo.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean sel, boolean focus) {
+                Object label = value instanceof CallAnalytics.Window ? "Last " + ((CallAnalytics.Window) value).label() : value;
+                return super.getListCellRendererComponent(list, label, index, sel, focus);
+            }
+        });
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        top.setOpaque(false);
+        top.add(windowCombo);
+        panel.add(top, BorderLayout.NORTH);
+
+        String[] columns = {"Address", "Offered", "Answered", "Abandoned", "Pops", "Avg ring (s)"};
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column >= 1 && column <= 4 ? Long.class : String.class; // numeric sort for counts
+            }
+        };
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        Runnable refresh = () -> {
+            CallAnalytics.Window w = (CallAnalytics.Window) windowCombo.getSelectedItem();
+            model.setRowCount(0);
+            for (String a : CallAnalytics.addresses()) {
+                CallAnalytics.Snapshot s = CallAnalytics.snapshot(a, w);
+                if (s == null) continue;
+                model.addRow(new Object[] {a, s.offered, s.answered, s.abandoned, s.pops,
+                    String.format("%.1f", s.avgRingMillis / 1000.0)});
+            }
+        };
+        windowCombo.addActionListener(e -> refresh.run());
+        refresh.run();
+        new javax.swing.Timer(2000, e -> {
+            if (visible.getAsBoolean()) refresh.run();
+        }).start();
+        return panel;
+    }
+
     private JPanel createContentPanel() {
         JPanel panel = new JPanel(new GridBagLayout());
         panel.setBackground(Color.WHITE);
@@ -298,7 +562,13 @@ public class JTAPIGui {
             if (list.isEmpty() && Files.exists(ico)) {
                 try { list.add(Toolkit.getDefaultToolkit().getImage(ico.toString())); } catch (Exception ignore) {}
             }
-            // Classpath resources fallback
+            // Classpath resources fallback: prefer the pre-scaled PNGs so nothing needs rescaling at startup
+            if (list.isEmpty()) {
+                for (String s : sizes) {
+                    java.net.URL res = getClass().getResource("/icon_" + s + ".png");
+                    if (res != null) try { list.add(ImageIO.read(res)); } catch (Exception ignore) {}
+                }
+            }
             if (list.isEmpty()) {
                 // Also check for a single classpath resource '/icon.png'
                 java.net.URL singleRes = getClass().getResource("/icon.png");
@@ -313,15 +583,7 @@ public class JTAPIGui {
                         }
                     } catch (Exception ignore) {}
                 }
-                java.net.URL res = getClass().getResource("/icon_256.png");
-                if (res != null) try { list.add(ImageIO.read(res)); } catch (Exception ignore) {}
-                res = getClass().getResource("/icon_48.png");
-                if (res != null) try { list.add(ImageIO.read(res)); } catch (Exception ignore) {}
-                res = getClass().getResource("/icon_32.png");
-                if (res != null) try { list.add(ImageIO.read(res)); } catch (Exception ignore) {}
-                res = getClass().getResource("/icon_16.png");
-                if (res != null) try { list.add(ImageIO.read(res)); } catch (Exception ignore) {}
-                res = getClass().getResource("/icon.ico");
+                java.net.URL res = getClass().getResource("/icon.ico");
                 if (res != null) try { list.add(Toolkit.getDefaultToolkit().getImage(res)); } catch (Exception ignore) {}
             }
         } catch (Exception ignore) {}
@@ -379,12 +641,49 @@ public class JTAPIGui {
         });
     }
 
+    // Subscribe one configured address, or the first provider address containing it. Throws if neither works.
+    private void subscribeAddress(Provider provider, String phone, AppConfig cfg, TaskScope scope) {
+        try {
+            Address a = provider.getAddress(phone);
+            JTAPICallerInfo addrListener = new JTAPICallerInfo(cfg.getUrlTemplate(), cfg.getTriggers().get(0), a.getName());
+            addrListener.applyConfig(cfg);
+            addrListener.setScope(scope);
+            JTAPICallerInfo.subscribe(a, addrListener);
+            activeListeners.add(addrListener);
+            updateStatus("Connected: Subscribed to " + a.getName(), new Color(40, 167, 69));
+            return;
+        } catch (Exception ex) {
+            updateStatus("Disconnected: Failed to subscribe to '" + phone + "' - " + ex.getMessage(), new Color(220, 53, 69));
+        }
+        Address[] available;
+        try {
+            available = provider.getAddresses();
+        } catch (Exception e2) {
+            updateStatus("Disconnected: Failed to list addresses - " + e2.getMessage(), new Color(220, 53, 69));
+            throw new IllegalStateException("Subscribe failed for " + phone, e2);
+        }
+        for (Address av : (available != null ? available : new Address[0])) {
+            try {
+                if (av.getName().contains(phone)) {
+                    JTAPICallerInfo fuzzyListener = new JTAPICallerInfo(cfg.getUrlTemplate(), cfg.getTriggers().get(0), av.getName());
+                    fuzzyListener.applyConfig(cfg);
+                    fuzzyListener.setScope(scope);
+                    JTAPICallerInfo.subscribe(av, fuzzyListener);
+                    activeListeners.add(fuzzyListener);
+                    updateStatus("Connected: Subscribed fuzzy to " + av.getName(), new Color(40, 167, 69));
+                    return;
+                }
+            } catch (Exception e) {
+                updateStatus("Connected: Fuzzy subscribe failed for " + av.getName() + " - " + e.getMessage(), new Color(40, 167, 69));
+            }
+        }
+        throw new IllegalStateException("Subscribe failed for " + phone);
+    }
+
     private void startListener() {
-        String user = userField.getText().trim();
-        String pass = new String(passField.getPassword());
-        String phone = phoneField.getText().trim();
+        AppConfig cfg = currentFormConfig();
+        String user = cfg.getUsername();
         String host = cucmHostField.getText().trim();
-        String urlTemplate = urlField.getText().trim();
 
         if (host.isEmpty() || user.isEmpty()) {
             updateStatus("Disconnected: CUCM host and username are required", new Color(220, 53, 69));
@@ -400,70 +699,56 @@ public class JTAPIGui {
 
     updateStatus("Trying to Connect to " + host, new Color(255, 193, 7)); // Yellow
 
-        String providerString = host + ";login=" + user + ";passwd=" + pass;
+        final AppConfig cfgFinal = cfg;
+        final String urlTemplateFinal = cfg.getUrlTemplate();
+        final String triggerFinal = cfg.getTriggers().get(0);
 
-    final String providerStringFinal = providerString;
-        final String phoneFinal = phone;
-        final String urlTemplateFinal = urlTemplate;
-        final String triggerFinal = (triggerCombo.getSelectedItem() != null ? triggerCombo.getSelectedItem().toString() : "CONNECTED");
-
-        workerThread = new Thread(() -> {
+        final TaskScope sessionFinal = new TaskScope("jtapi-session");
+        session = sessionFinal;
+        sessionFinal.fork(() -> {
             try {
-                JtapiPeer peer = JtapiPeerFactory.getJtapiPeer(null);
-                provider = peer.getProvider(providerStringFinal);
+                // a call still up from before a restart must be found in the ledger before it can pop again
+                PopLedger.awaitLoaded();
+                // "sim:..." in the CUCM Host field runs against the built-in load simulator
+                provider = JTAPICallerInfo.openProvider(cfgFinal.providerString());
                 boolean subscribed = false;
-                if ("ALL".equalsIgnoreCase(phoneFinal)) {
+                if (cfgFinal.isMonitoringAll()) {
                     JTAPICallerInfo allListener = new JTAPICallerInfo(urlTemplateFinal, triggerFinal, null);
+                    allListener.applyConfig(cfgFinal);
+                    allListener.setScope(sessionFinal);
+                    activeListeners.add(allListener);
                     Address[] all = provider.getAddresses();
-                    for (Address a : (all != null ? all : new Address[0])) {
-                        try {
-                            a.addCallObserver(allListener);
-                            subscribed = true;
-                        } catch (Exception ex) {
-                            updateStatus("Connected: Subscribe failed for some addresses - " + ex.getMessage(), new Color(40, 167, 69));
-                        }
-                    }
-                    if (subscribed) updateStatus("Connected: Subscribed to ALL (" + (all != null ? all.length : 0) + " addresses)", new Color(40, 167, 69));
-                    else updateStatus("Disconnected: Failed to subscribe to any addresses", new Color(220, 53, 69));
+                    // one virtual-thread task per address instead of thousands of sequential CTI round trips
+                    int ok = sessionFinal.invokeAll(JTAPICallerInfo.subscribeTasks(all != null ? all : new Address[0], allListener),
+                        JTAPICallerInfo.SUBSCRIBE_DEADLINE);
+                    subscribed = ok > 0;
+                    int total = all != null ? all.length : 0;
+                    if (!subscribed) updateStatus("Disconnected: Failed to subscribe to any addresses", new Color(220, 53, 69));
+                    else if (ok < total) updateStatus("Connected: Subscribed to ALL (" + ok + " of " + total + " addresses, " + (total - ok) + " failed)", new Color(40, 167, 69));
+                    else updateStatus("Connected: Subscribed to ALL (" + ok + " addresses)", new Color(40, 167, 69));
                 } else {
-                    try {
-                        Address a = provider.getAddress(phoneFinal);
-                        JTAPICallerInfo addrListener = new JTAPICallerInfo(urlTemplateFinal, triggerFinal, a.getName());
-                        a.addCallObserver(addrListener);
-                        subscribed = true;
-                        updateStatus("Connected: Subscribed to " + a.getName(), new Color(40, 167, 69));
-                    } catch (Exception ex) {
-                        updateStatus("Disconnected: Failed to subscribe to '" + phoneFinal + "' - " + ex.getMessage(), new Color(220, 53, 69));
-                        try {
-                            Address[] available = provider.getAddresses();
-                            for (Address av : (available != null ? available : new Address[0])) {
-                                try {
-                                    if (av.getName().contains(phoneFinal)) {
-                                        JTAPICallerInfo fuzzyListener = new JTAPICallerInfo(urlTemplateFinal, triggerFinal, av.getName());
-                                        av.addCallObserver(fuzzyListener);
-                                        subscribed = true;
-                                        updateStatus("Connected: Subscribed fuzzy to " + av.getName(), new Color(40, 167, 69));
-                                        break;
-                                    }
-                                } catch (Exception e) {
-                                    updateStatus("Connected: Fuzzy subscribe failed for " + av.getName() + " - " + e.getMessage(), new Color(40, 167, 69));
-                                }
-                            }
-                        } catch (Exception e2) {
-                            updateStatus("Disconnected: Failed to list addresses - " + e2.getMessage(), new Color(220, 53, 69));
-                        }
+                    // one task per configured address, like the ALL path; each falls back to a fuzzy match on its own
+                    java.util.List<String> phones = cfgFinal.getMonitoredAddresses();
+                    java.util.List<Runnable> tasks = new java.util.ArrayList<>(phones.size());
+                    for (String phoneFinal : phones) {
+                        tasks.add(() -> subscribeAddress(provider, phoneFinal, cfgFinal, sessionFinal));
+                    }
+                    int ok = sessionFinal.invokeAll(tasks, JTAPICallerInfo.SUBSCRIBE_DEADLINE);
+                    subscribed = ok > 0;
+                    if (phones.size() > 1 && subscribed) {
+                        updateStatus("Connected: Subscribed to " + ok + " of " + phones.size() + " addresses", new Color(40, 167, 69));
                     }
                 }
 
                 // Apply UI state based on whether we actually subscribed
                 if (subscribed) {
+                    StartupMetrics.markPopReady();
                     SwingUtilities.invokeLater(() -> {
                         userField.setEnabled(false);
                         passField.setEnabled(false);
                         phoneField.setEnabled(false);
                         cucmHostField.setEnabled(false);
-                        urlField.setEnabled(false);
-                        triggerCombo.setEnabled(false);
+                        // urlField / triggerCombo stay enabled: changes apply live without reconnecting
                         rememberMeCheck.setEnabled(false);
                         startBtn.setEnabled(false);
                         startBtn.setText("Start");
@@ -471,6 +756,8 @@ public class JTAPIGui {
                         if (frame != null) frame.setCursor(Cursor.getDefaultCursor());
                     });
                 } else {
+                    activeListeners.clear();
+                    if (trayIcon != null) showFrame(); // auto-connect from tray failed; let the user see why
                     SwingUtilities.invokeLater(() -> {
                         // Reset UI so user can correct inputs; ensure Stop is disabled
                         userField.setEnabled(true);
@@ -488,6 +775,8 @@ public class JTAPIGui {
                 }
             } catch (Exception ex) {
                 updateStatus("Disconnected: Failed to start listener - " + ex.getMessage(), new Color(220, 53, 69));
+                activeListeners.clear();
+                if (trayIcon != null) showFrame();
                 SwingUtilities.invokeLater(() -> {
                     userField.setEnabled(true);
                     passField.setEnabled(true);
@@ -502,9 +791,7 @@ public class JTAPIGui {
                     if (frame != null) frame.setCursor(Cursor.getDefaultCursor());
                 });
             }
-        }, "jtapi-worker");
-        workerThread.setDaemon(true);
-        workerThread.start();
+        });
     }
 
     private void stopListener() {
@@ -517,6 +804,11 @@ public class JTAPIGui {
         rememberMeCheck.setEnabled(true);
         startBtn.setEnabled(true);
         stopBtn.setEnabled(false);
+        // cancel in-flight subscriptions, pops and prefetches before tearing down the provider
+        if (session != null) {
+            session.close();
+            session = null;
+        }
         if (provider != null) {
             try {
                 provider.shutdown();
@@ -526,13 +818,15 @@ public class JTAPIGui {
             }
             provider = null;
         }
-        listener = null;
+        activeListeners.clear();
     }
 
     // Remove existing CiscoJtapi*.log files and watch for new ones to delete immediately.
     private void startLogCleaner() {
-        Thread t = new Thread(() -> {
+        TaskScope.startVirtual("log-cleaner", () -> {
             Path dir = Paths.get(System.getProperty("user.dir"));
+            // age out rolled call-events-<date>.log files per the configured retention
+            JTAPICallerInfo.pruneOldLogs(configStore.get().getLogRetentionDays());
             try {
                 // Delete any existing matching files
                 try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "CiscoJtapi*.log")) {
@@ -572,9 +866,7 @@ public class JTAPIGui {
                     }
                 } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
             }
-        }, "log-cleaner");
-        t.setDaemon(true);
-        t.start();
+        });
     }
 
     private void addFieldToPanel(JPanel panel, String labelText, JComponent field) {
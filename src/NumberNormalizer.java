@@ -0,0 +1,121 @@
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Turns the calling number CUCM reports (Address.getName(): "81027226", "96155702834", "9004412345678")
+// into E.164 for the CRM using a small dial plan in CUCM route-pattern notation:
+//
+//   dialPlan = XXXX=EXT; 961XXXXXXXX=+; 9.!=; 00.!=+; 0.!=+961; XXXXXXXX=+961
+//
+// Pattern: digits, X (any digit), ! (one or more digits, last only) and "." separating a prefix that is
+// discarded. The replacement is put in front of what is kept; EXT marks an internal extension (left as is).
+// Rules are tried in order and the first match wins, except that a rule with an empty replacement only
+// strips its access code and matching continues with the remainder. Unmatched numbers are left as dialled.
+//
+// Results are kept in a bounded LRU cache, so a repeat caller costs one hash lookup. A new instance is
+// compiled per config, so a dial plan change starts with an empty cache.
+public final class NumberNormalizer {
+    private static final int CACHE_SIZE = 10_000;
+
+    private final Pattern[] patterns;
+    private final String[] replacements;
+    private final String source;
+    private final Map<String, String> cache = new LinkedHashMap<String, String>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private NumberNormalizer(List<Pattern> patterns, List<String> replacements, String source) {
+        this.patterns = patterns.toArray(new Pattern[0]);
+        this.replacements = replacements.toArray(new String[0]);
+        this.source = source;
+    }
+
+    // Lenient like TriggerRules.parse: bad rules are logged as warnings and skipped.
+    public static NumberNormalizer parse(String spec) {
+        List<Pattern> patterns = new ArrayList<>();
+        List<String> replacements = new ArrayList<>();
+        if (spec != null) {
+            for (String rule : spec.split("[;|]")) {
+                rule = rule.trim();
+                if (rule.isEmpty()) continue;
+                int eq = rule.indexOf('=');
+                Pattern p = eq < 0 ? null : compile(rule.substring(0, eq).trim());
+                if (p == null) {
+                    EventLog.warn("Ignoring dial plan rule: {}", rule);
+                    continue;
+                }
+                patterns.add(p);
+                replacements.add(rule.substring(eq + 1).trim());
+            }
+        }
+        return new NumberNormalizer(patterns, replacements, spec == null ? "" : spec.trim());
+    }
+
+    // "9.!" -> ^(9)(\d+)$ : group 1 is discarded, group 2 kept.
+    private static Pattern compile(String routePattern) {
+        if (routePattern.isEmpty()) return null;
+        int dot = routePattern.indexOf('.');
+        String pre = dot < 0 ? "" : routePattern.substring(0, dot);
+        String post = dot < 0 ? routePattern : routePattern.substring(dot + 1);
+        StringBuilder re = new StringBuilder("^(");
+        if (!appendPattern(re, pre, false)) return null;
+        re.append(")(");
+        if (!appendPattern(re, post, true)) return null;
+        return Pattern.compile(re.append(")$").toString());
+    }
+
+    private static boolean appendPattern(StringBuilder re, String p, boolean bangAllowed) {
+        for (int i = 0; i < p.length(); i++) {
+            char c = Character.toUpperCase(p.charAt(i));
+            if (c >= '0' && c <= '9') re.append(c);
+            else if (c == 'X') re.append("\\d");
+            else if (c == '!' && bangAllowed && i == p.length() - 1) re.append("\\d+");
+            else return false;
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return patterns.length == 0;
+    }
+
+    // E.164 ("+96181027226") for external numbers, the extension for internal ones; null stays null.
+    public String normalize(String raw) {
+        if (raw == null || patterns.length == 0) return raw;
+        synchronized (cache) {
+            String hit = cache.get(raw);
+            if (hit != null) return hit;
+        }
+        String result = apply(raw);
+        synchronized (cache) {
+            cache.put(raw, result);
+        }
+        return result;
+    }
+
+    private String apply(String raw) {
+        String digits = raw.trim();
+        boolean plus = digits.startsWith("+");
+        digits = digits.replaceAll("[^0-9]", "");
+        if (plus) return "+" + digits;        // already E.164
+        if (digits.isEmpty()) return raw;      // anonymous / SIP URI: nothing to normalise
+        for (int i = 0; i < patterns.length; i++) {
+            Matcher m = patterns[i].matcher(digits);
+            if (!m.matches()) continue;
+            String kept = m.group(2);
+            String rep = replacements[i];
+            if ("EXT".equalsIgnoreCase(rep)) return digits;
+            if (!rep.isEmpty()) return rep + kept;
+            digits = kept; // access code only: strip it and keep matching with the later rules
+        }
+        return digits;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
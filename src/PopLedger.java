@@ -0,0 +1,231 @@
+import javax.telephony.Call;
+
+import com.cisco.jtapi.extensions.CiscoCall;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Calls that have already popped, kept across restarts so a call that is still up when the app or the
+// listener restarts does not pop a second time. Keyed by the CUCM global call id ("cmId/globalCallId").
+// Calls without one (the simulator) are not tracked.
+//
+// Checking and claiming a call is one ConcurrentHashMap.putIfAbsent on the observer thread. The durable
+// part is a "<millis> <callId>" line appended to popped-calls.log by the pop task before the browser
+// opens, so a crash right after a pop still remembers it. Entries expire after popLedgerHours. The file
+// is rewritten with only the live entries on load, hourly, and whenever it grows to twice their number,
+// so memory and file size stay bounded by the pops within the TTL.
+//
+// Loading and compaction run on background tasks: configure() only starts the load (it is called on the
+// EDT), callers that are about to subscribe wait for it with awaitLoaded(), and a compaction holds the
+// lock only to swap the file in, so a pop appending its line never waits for a rewrite.
+public final class PopLedger {
+    private static final Path FILE = ConfigStore.DEFAULT_DIR.resolve("popped-calls.log");
+    private static final int MIN_COMPACT_LINES = 1000;
+    private static final long COMPACT_EVERY_MILLIS = 3_600_000L;
+    private static final long LOAD_WAIT_SECONDS = 10;
+
+    private static final Map<String, Long> popped = new ConcurrentHashMap<>();
+    private static volatile long ttlMillis;      // 0 = ledger off
+    private static final AtomicBoolean loadStarted = new AtomicBoolean();
+    private static final CompletableFuture<Void> loaded = new CompletableFuture<>();
+    private static FileChannel channel;          // guarded by class lock
+    private static int lines;                    // lines in the file, guarded by class lock
+    private static long compactedAt;             // guarded by class lock
+    private static boolean compacting;           // guarded by class lock
+    private static List<String> appendedDuringCompact; // guarded by class lock; non-null while compacting
+
+    private PopLedger() {}
+
+    // Never blocks: the first call with the ledger on reads the file on a background task.
+    public static void configure(AppConfig cfg) {
+        ttlMillis = cfg.getPopLedgerHours() * 3_600_000L;
+        if (ttlMillis > 0 && loadStarted.compareAndSet(false, true)) {
+            TaskScope.global().fork(() -> {
+                try {
+                    synchronized (PopLedger.class) {
+                        load();
+                    }
+                } finally {
+                    loaded.complete(null);
+                }
+            });
+        }
+    }
+
+    // Wait until earlier pops are known. Called before subscribing, so no call event is checked
+    // against a ledger that is still being read. Not for the EDT.
+    public static void awaitLoaded() {
+        if (!loadStarted.get()) return;
+        try {
+            loaded.get(LOAD_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            EventLog.warn("Pop ledger not loaded yet, continuing: {}", String.valueOf(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Ledger key for a call, or null if it has no CUCM call id.
+    public static String key(Call call) {
+        return call instanceof CiscoCall ? JTAPICallerInfo.callId(call) : null;
+    }
+
+    // True if this call may pop now (and it is claimed); false if it popped before, here or in an earlier run.
+    public static boolean claim(String key, long now) {
+        long ttl = ttlMillis;
+        if (key == null || ttl == 0) return true;
+        Long prev = popped.putIfAbsent(key, now);
+        if (prev == null) return true;
+        if (now - prev < ttl) return false;
+        // stale entry from a call id CUCM has since reused
+        return popped.replace(key, prev, now);
+    }
+
+    // Give back a claim that did not lead to a pop (rate limited); only removes our own entry.
+    public static void release(String key, long claimedAt) {
+        if (key != null) popped.remove(key, claimedAt);
+    }
+
+    // Persist a claim. Called from the pop task, off the observer thread, before the browser is opened.
+    public static synchronized void record(String key, long now) {
+        if (key == null || ttlMillis == 0) return;
+        try {
+            if (channel == null) {
+                Files.createDirectories(FILE.getParent());
+                channel = FileChannel.open(FILE, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            String line = now + " " + key + "\n";
+            ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) channel.write(buf);
+            lines++;
+            if (appendedDuringCompact != null) appendedDuringCompact.add(line);
+            if (!compacting && ((lines >= MIN_COMPACT_LINES && lines > 2 * popped.size()) || now - compactedAt >= COMPACT_EVERY_MILLIS)) {
+                compacting = true;
+                TaskScope.global().fork(PopLedger::compactInBackground);
+            }
+        } catch (IOException e) {
+            EventLog.warn("Pop ledger write failed: {}", e.getMessage());
+        }
+    }
+
+    public static int size() {
+        return popped.size();
+    }
+
+    public static synchronized void close() {
+        closeChannel();
+    }
+
+    // Read entries still inside the TTL. A torn last line from a crash mid-write is skipped.
+    private static void load() {
+        long now = System.currentTimeMillis();
+        if (Files.exists(FILE)) {
+            try (BufferedReader br = Files.newBufferedReader(FILE, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    int sp = line.indexOf(' ');
+                    if (sp <= 0 || sp == line.length() - 1) continue;
+                    try {
+                        long at = Long.parseLong(line.substring(0, sp));
+                        if (now - at < ttlMillis) popped.merge(line.substring(sp + 1), at, Math::max);
+                    } catch (NumberFormatException ignore) {}
+                }
+            } catch (IOException e) {
+                EventLog.warn("Pop ledger not loaded: {}", e.getMessage());
+            }
+        }
+        compact(now);
+    }
+
+    // Same rewrite as compact(), but the temp file is written without the lock. Lines appended meanwhile
+    // are copied into it before the swap. A claim can end up both in the snapshot and appended later;
+    // the duplicate line is harmless (load keeps the newest time).
+    private static void compactInBackground() {
+        long now = System.currentTimeMillis();
+        List<String> snapshot = new ArrayList<>();
+        synchronized (PopLedger.class) {
+            long ttl = ttlMillis;
+            for (Iterator<Long> it = popped.values().iterator(); it.hasNext(); ) {
+                if (now - it.next() >= ttl) it.remove();
+            }
+            for (Map.Entry<String, Long> e : popped.entrySet()) snapshot.add(e.getValue() + " " + e.getKey() + "\n");
+            appendedDuringCompact = new ArrayList<>();
+        }
+        Path tmp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+        try {
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (String line : snapshot) w.write(line);
+            }
+            synchronized (PopLedger.class) {
+                try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+                    for (String line : appendedDuringCompact) w.write(line);
+                }
+                closeChannel();
+                move(tmp);
+                lines = snapshot.size() + appendedDuringCompact.size();
+            }
+        } catch (IOException e) {
+            EventLog.warn("Pop ledger compaction failed: {}", e.getMessage());
+        } finally {
+            synchronized (PopLedger.class) {
+                appendedDuringCompact = null;
+                compacting = false;
+                compactedAt = now;
+            }
+        }
+    }
+
+    // Drop expired entries and rewrite the file with the rest (temp file + move, like ConfigStore).
+    private static void compact(long now) {
+        compactedAt = now;
+        long ttl = ttlMillis;
+        for (Iterator<Long> it = popped.values().iterator(); it.hasNext(); ) {
+            if (now - it.next() >= ttl) it.remove();
+        }
+        closeChannel();
+        Path tmp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(FILE.getParent());
+            int n = 0;
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> e : popped.entrySet()) {
+                    w.write(e.getValue() + " " + e.getKey() + "\n");
+                    n++;
+                }
+            }
+            move(tmp);
+            lines = n;
+        } catch (IOException e) {
+            EventLog.warn("Pop ledger compaction failed: {}", e.getMessage());
+        }
+    }
+
+    private static void move(Path tmp) throws IOException {
+        try {
+            Files.move(tmp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, FILE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignore) {}
+        channel = null;
+    }
+}
@@ -0,0 +1,123 @@
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumSet;
+
+// Encrypts secrets (the CUCM password) for storage in config.properties.
+// AES-256-GCM with a per-user random key kept next to the config; pure JCE so it behaves the same on every OS.
+// Encrypted values are stored as ENC(base64(iv || ciphertext)); anything else is treated as legacy clear text.
+// The key file is readable by its owner only (POSIX mode 600, or an owner-only ACL on NTFS). That keeps the
+// password from other local users and out of copies of config.properties, but anyone who can read the
+// user's own files can read the key too, so it is no defence against malware running as that user.
+public final class SecretCipher {
+    private static final String PREFIX = "ENC(";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final Path keyFile;
+    private final SecureRandom random = new SecureRandom();
+    private SecretKey key;
+
+    public SecretCipher(Path keyFile) {
+        this.keyFile = keyFile;
+    }
+
+    public static boolean isEncrypted(String value) {
+        return value != null && value.startsWith(PREFIX) && value.endsWith(")");
+    }
+
+    public synchronized String encrypt(String plain) throws IOException {
+        if (plain == null || plain.isEmpty()) return "";
+        try {
+            byte[] iv = new byte[IV_BYTES];
+            random.nextBytes(iv);
+            Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+            c.init(Cipher.ENCRYPT_MODE, key(true), new GCMParameterSpec(TAG_BITS, iv));
+            byte[] ct = c.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+            byte[] out = new byte[iv.length + ct.length];
+            System.arraycopy(iv, 0, out, 0, iv.length);
+            System.arraycopy(ct, 0, out, iv.length, ct.length);
+            return PREFIX + Base64.getEncoder().encodeToString(out) + ")";
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt secret: " + e.getMessage(), e);
+        }
+    }
+
+    // Returns clear-text values unchanged so configs written by older versions keep working.
+    public synchronized String decrypt(String stored) throws IOException {
+        if (!isEncrypted(stored)) return stored == null ? "" : stored;
+        try {
+            byte[] in = Base64.getDecoder().decode(stored.substring(PREFIX.length(), stored.length() - 1));
+            Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+            c.init(Cipher.DECRYPT_MODE, key(false), new GCMParameterSpec(TAG_BITS, in, 0, IV_BYTES));
+            byte[] pt = c.doFinal(in, IV_BYTES, in.length - IV_BYTES);
+            return new String(pt, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException("Failed to decrypt secret (key file changed?): " + e.getMessage(), e);
+        }
+    }
+
+    // Only encrypt creates a key. A missing key file while decrypting means the ENC(...) value was written
+    // with a key that is gone, and a fresh one could never read it.
+    private SecretKey key(boolean create) throws IOException {
+        if (key != null) return key;
+        byte[] raw;
+        if (Files.exists(keyFile)) {
+            try {
+                restrictToOwner(keyFile); // key files written by older versions kept the inherited permissions
+            } catch (IOException e) {
+                EventLog.warn("Cannot restrict access to {}: {}", keyFile, e.getMessage());
+            }
+            raw = Base64.getDecoder().decode(new String(Files.readAllBytes(keyFile), StandardCharsets.US_ASCII).trim());
+        } else if (!create) {
+            throw new IOException("key file " + keyFile + " is missing");
+        } else {
+            EventLog.info("Creating new secret key {}", keyFile);
+            raw = new byte[32];
+            random.nextBytes(raw);
+            Files.createDirectories(keyFile.getParent());
+            // restrict the empty file first so the key is never on disk with inherited permissions
+            Files.createFile(keyFile);
+            restrictToOwner(keyFile);
+            Files.write(keyFile, Base64.getEncoder().encode(raw));
+        }
+        key = new SecretKeySpec(raw, "AES");
+        return key;
+    }
+
+    // Owner-only access: mode 600 on POSIX; on Windows an ACL with a single full-control entry for the
+    // owner, which also drops the entries inherited from the profile folder.
+    private static void restrictToOwner(Path p) throws IOException {
+        if (Files.getFileAttributeView(p, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(p, PosixFilePermissions.fromString("rw-------"));
+            return;
+        }
+        AclFileAttributeView acl = Files.getFileAttributeView(p, AclFileAttributeView.class);
+        if (acl == null) {
+            EventLog.warn("Cannot restrict access to {}: no POSIX or ACL support", p);
+            return;
+        }
+        UserPrincipal owner = acl.getOwner();
+        AclEntry ownerOnly = AclEntry.newBuilder()
+            .setType(AclEntryType.ALLOW)
+            .setPrincipal(owner)
+            .setPermissions(EnumSet.allOf(AclEntryPermission.class))
+            .build();
+        acl.setAcl(Collections.singletonList(ownerOnly));
+    }
+}
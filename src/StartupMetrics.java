@@ -0,0 +1,37 @@
+import java.time.Instant;
+
+// Records startup milestones so we can see how long the app takes to become ready to pop.
+// "Pop ready" means the provider is open and at least one address has our CallObserver attached.
+public final class StartupMetrics {
+    // fallback origin when the OS does not report a process start time
+    private static final long CLASS_LOAD_MILLIS = System.currentTimeMillis();
+    private static volatile boolean popReadyReported = false;
+
+    private StartupMetrics() {}
+
+    // Milliseconds since the JVM process was started (falls back to class-load time).
+    public static long elapsedMillis() {
+        long origin = CLASS_LOAD_MILLIS;
+        try {
+            Instant started = ProcessHandle.current().info().startInstant().orElse(null);
+            if (started != null) origin = started.toEpochMilli();
+        } catch (Exception ignore) {}
+        return System.currentTimeMillis() - origin;
+    }
+
+    public static void mark(String milestone) {
+        report("Startup: " + milestone + " at " + elapsedMillis() + " ms");
+    }
+
+    // Report time-to-first-pop-ready once per process; later reconnects are not startup.
+    public static void markPopReady() {
+        if (popReadyReported) return;
+        popReadyReported = true;
+        report("Startup: time-to-first-pop-ready=" + elapsedMillis() + " ms");
+    }
+
+    // Marks are taken on the EDT during startup, so they only queue the line; EventLog's writer does the I/O.
+    private static void report(String line) {
+        EventLog.info(line);
+    }
+}
@@ -0,0 +1,120 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+// Execution layer on JDK 21 virtual threads. A scope owns every task forked into it (subscriptions, pop
+// delivery, enrichment lookups, log writes); close() interrupts whatever is still running, so Stop cancels
+// all in-flight work in one call. Virtual threads cost a few hundred bytes of stack when parked, so
+// thousands of blocked CTI / HTTP / disk operations fit in a few MB.
+// (StructuredTaskScope is still a preview API in the bundled runtime, so ownership is tracked here.)
+public final class TaskScope implements AutoCloseable {
+    private final String name;
+    private final ExecutorService executor;
+    private final Set<Future<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+    // every scope not yet closed, for the diagnostics summary
+    private static final Set<TaskScope> OPEN = ConcurrentHashMap.newKeySet();
+
+    public TaskScope(String name) {
+        this.name = name;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        OPEN.add(this);
+    }
+
+    // Process-wide scope for work not tied to a Start/Stop session (config I/O, log writer, cleaners).
+    private static final TaskScope GLOBAL = new TaskScope("app");
+
+    public static TaskScope global() {
+        return GLOBAL;
+    }
+
+    // Start a long-running named virtual thread outside any scope (watchers, per-endpoint workers).
+    public static Thread startVirtual(String threadName, Runnable r) {
+        return Thread.ofVirtual().name(threadName).start(r);
+    }
+
+    public static List<TaskScope> open() {
+        return new ArrayList<>(OPEN);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    public <T> Future<T> fork(Callable<T> task) {
+        if (closed) {
+            CompletableFuture<T> f = new CompletableFuture<>();
+            f.cancel(false);
+            return f;
+        }
+        FutureTask<T> ft = new FutureTask<T>(task) {
+            @Override
+            protected void done() {
+                inFlight.remove(this);
+            }
+        };
+        inFlight.add(ft);
+        try {
+            executor.execute(ft);
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(ft);
+            ft.cancel(false);
+        }
+        return ft;
+    }
+
+    public Future<?> fork(Runnable task) {
+        return fork(Executors.callable(task));
+    }
+
+    // Fork with a deadline: the task is interrupted if it has not finished within the timeout.
+    public Future<?> fork(Runnable task, Duration deadline) {
+        Future<?> f = fork(task);
+        if (!f.isDone()) {
+            fork(() -> {
+                try {
+                    f.get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    f.cancel(true);
+                } catch (Exception ignore) {}
+            });
+        }
+        return f;
+    }
+
+    // Run all tasks concurrently and wait for them (bounded by the deadline); returns how many succeeded.
+    public int invokeAll(List<? extends Runnable> tasks, Duration deadline) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        for (Runnable r : tasks) futures.add(fork(r));
+        long end = System.nanoTime() + deadline.toNanos();
+        int ok = 0;
+        for (Future<?> f : futures) {
+            try {
+                f.get(Math.max(0, end - System.nanoTime()), TimeUnit.NANOSECONDS);
+                ok++;
+            } catch (TimeoutException e) {
+                f.cancel(true);
+            } catch (ExecutionException | CancellationException ignore) {}
+        }
+        return ok;
+    }
+
+    // Cancel everything still running in this scope and refuse new work.
+    @Override
+    public void close() {
+        closed = true;
+        OPEN.remove(this);
+        for (Future<?> f : inFlight) f.cancel(true);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,141 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+// Always-on-top call toasts. A fixed pool of undecorated JWindows is built once (prewarm) and reused,
+// so showing a toast only sets label text and makes a window visible: no Swing components are created
+// per call and memory stays bounded by the pool size. Concurrent calls stack upwards from the bottom-right
+// corner; when every slot is busy the oldest toast is replaced.
+public final class ToastNotifier {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 86;
+    private static final int GAP = 8;
+
+    private static Slot[] slots;            // EDT only
+    private static int displayMillis = 8000;
+    private static long showCounter = 0;     // EDT only; orders slots for oldest-first replacement
+
+    private ToastNotifier() {}
+
+    public static boolean isAvailable() {
+        return !GraphicsEnvironment.isHeadless();
+    }
+
+    // Build the window pool up front; call once at startup (any thread). Later calls only adjust timing.
+    public static void prewarm(int slotCount, int seconds) {
+        if (!isAvailable()) return;
+        SwingUtilities.invokeLater(() -> {
+            displayMillis = Math.max(1, seconds) * 1000;
+            if (slots != null) return;
+            Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+            int n = Math.max(1, Math.min(slotCount, screen.height / (HEIGHT + GAP)));
+            slots = new Slot[n];
+            for (int i = 0; i < n; i++) {
+                int x = screen.x + screen.width - WIDTH - GAP;
+                int y = screen.y + screen.height - (i + 1) * (HEIGHT + GAP);
+                slots[i] = new Slot(x, y);
+            }
+        });
+    }
+
+    // Show a toast for a call. key identifies the call so the toast can be dismissed later;
+    // onClick runs (off the EDT) when the user clicks the toast.
+    public static void show(Object key, String number, String name, Runnable onClick) {
+        if (!isAvailable()) return;
+        SwingUtilities.invokeLater(() -> {
+            if (slots == null) return; // not prewarmed: this process has no toast channel
+            Slot target = null;
+            for (Slot s : slots) {
+                if (s.key == key) { target = s; break; }       // same call: update in place
+            }
+            if (target == null) {
+                for (Slot s : slots) {
+                    if (s.key == null) { target = s; break; }
+                }
+            }
+            if (target == null) {
+                target = slots[0];
+                for (Slot s : slots) {
+                    if (s.shownAt < target.shownAt) target = s;
+                }
+            }
+            target.show(key, number, name, onClick, ++showCounter);
+        });
+    }
+
+    public static void dismiss(Object key) {
+        if (!isAvailable()) return;
+        SwingUtilities.invokeLater(() -> {
+            if (slots == null) return;
+            for (Slot s : slots) {
+                if (s.key == key) s.hide();
+            }
+        });
+    }
+
+    private static final class Slot {
+        final JWindow window = new JWindow();
+        final JLabel numberLabel = new JLabel();
+        final JLabel nameLabel = new JLabel();
+        final Timer timer;
+        Object key;
+        Runnable onClick;
+        long shownAt;
+
+        Slot(int x, int y) {
+            JPanel panel = new JPanel(new GridLayout(3, 1));
+            panel.setBackground(new Color(34, 34, 34));
+            panel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(new Color(0, 123, 255), 2),
+                BorderFactory.createEmptyBorder(6, 12, 6, 12)
+            ));
+            JLabel title = new JLabel("Incoming call - click to open");
+            title.setForeground(new Color(180, 180, 180));
+            title.setFont(new Font("SansSerif", Font.PLAIN, 12));
+            numberLabel.setForeground(Color.WHITE);
+            numberLabel.setFont(new Font("SansSerif", Font.BOLD, 18));
+            nameLabel.setForeground(Color.WHITE);
+            nameLabel.setFont(new Font("SansSerif", Font.PLAIN, 14));
+            panel.add(title);
+            panel.add(numberLabel);
+            panel.add(nameLabel);
+            window.setContentPane(panel);
+            window.setAlwaysOnTop(true);
+            window.setFocusableWindowState(false); // never steal focus from the agent's current app
+            window.setBounds(x, y, WIDTH, HEIGHT);
+            panel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+            panel.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    Runnable r = onClick;
+                    hide();
+                    // opening a browser can block; keep it off the EDT
+                    if (r != null) TaskScope.global().fork(r);
+                }
+            });
+            timer = new Timer(displayMillis, e -> hide());
+            timer.setRepeats(false);
+            // realise the native peer now so the first real toast does not pay for it
+            window.addNotify();
+        }
+
+        void show(Object key, String number, String name, Runnable onClick, long order) {
+            this.key = key;
+            this.onClick = onClick;
+            this.shownAt = order;
+            numberLabel.setText(number != null ? number : "Unknown number");
+            nameLabel.setText(name != null && !name.isEmpty() ? name : " ");
+            timer.setInitialDelay(displayMillis);
+            timer.restart();
+            if (!window.isVisible()) window.setVisible(true);
+        }
+
+        void hide() {
+            timer.stop();
+            window.setVisible(false);
+            key = null;
+            onClick = null;
+        }
+    }
+}
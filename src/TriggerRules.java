@@ -0,0 +1,108 @@
+import java.util.*;
+
+// Maps call stages to ordered action lists, e.g. "CREATED=PREFETCH; RINGING=OPEN; DISCONNECTED=LOG".
+// A rule may name several stages ("RINGING,CONNECTED=OPEN"); rules naming the same stage append their
+// actions in order. The result is compiled once into a per-stage array, so the event path does a single
+// array lookup no matter how many rules are configured.
+public final class TriggerRules {
+    public enum Stage { CREATED, ALERTING, RINGING, CONNECTED, DISCONNECTED }
+
+    public enum Action {
+        PREFETCH, // warm the CRM record for the caller in the background
+        TOAST,    // always-on-top notification with click-to-open
+        OPEN,     // browser pop (at most once per call)
+        LOG       // write a call summary line to call-events.log
+    }
+
+    private static final Action[] NONE = new Action[0];
+
+    private final Action[][] byStage = new Action[Stage.values().length][];
+    private final String source;
+
+    private TriggerRules(Map<Stage, List<Action>> table, String source) {
+        for (Stage s : Stage.values()) {
+            List<Action> l = table.get(s);
+            byStage[s.ordinal()] = l == null ? NONE : l.toArray(new Action[0]);
+        }
+        this.source = source;
+    }
+
+    // Legacy single/multi trigger setting: every trigger stage opens the URL.
+    public static TriggerRules fromTriggers(List<String> triggers) {
+        StringBuilder sb = new StringBuilder();
+        for (String t : triggers) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(t);
+        }
+        return parse(sb.append("=OPEN").toString());
+    }
+
+    // Lenient: unknown stages/actions are logged as warnings and skipped so a typo never stops pops.
+    public static TriggerRules parse(String spec) {
+        Map<Stage, List<Action>> table = new EnumMap<>(Stage.class);
+        if (spec != null) {
+            for (String rule : spec.split("[;|]")) {
+                rule = rule.trim();
+                if (rule.isEmpty()) continue;
+                int eq = rule.indexOf('=');
+                if (eq < 0) {
+                    EventLog.warn("Ignoring trigger rule without '=': {}", rule);
+                    continue;
+                }
+                List<Stage> stages = new ArrayList<>();
+                for (String s : rule.substring(0, eq).split(",")) {
+                    Stage st = lookup(Stage.class, s);
+                    if (st != null) stages.add(st);
+                }
+                List<Action> actions = new ArrayList<>();
+                for (String a : rule.substring(eq + 1).split(",")) {
+                    Action ac = lookup(Action.class, a);
+                    if (ac != null) actions.add(ac);
+                }
+                for (Stage st : stages) {
+                    List<Action> l = table.computeIfAbsent(st, k -> new ArrayList<>());
+                    for (Action ac : actions) {
+                        if (!l.contains(ac)) l.add(ac);
+                    }
+                }
+            }
+        }
+        return new TriggerRules(table, spec == null ? "" : spec.trim());
+    }
+
+    public Action[] actionsFor(Stage stage) {
+        return byStage[stage.ordinal()];
+    }
+
+    public boolean uses(Action action) {
+        for (Action[] list : byStage) {
+            for (Action a : list) {
+                if (a == action) return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        for (Action[] a : byStage) {
+            if (a.length > 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static <E extends Enum<E>> E lookup(Class<E> type, String name) {
+        String n = name.trim().toUpperCase();
+        if (n.isEmpty()) return null;
+        try {
+            return Enum.valueOf(type, n);
+        } catch (IllegalArgumentException e) {
+            EventLog.warn("Ignoring unknown {} in trigger rules: {}", type.getSimpleName().toLowerCase(), n);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Supervisor wallboard: one listener (normally ALL mode) feeds a central table of active calls, and any
+// number of read-only viewers follow it over HTTP. Viewers add no CTI load, because they never touch
+// the provider.
+//
+// Every change becomes one JSON delta with a sequence number in a fixed-size ring shared by all viewers.
+// A viewer is only a cursor into that ring. One that falls more than RING deltas behind gets a fresh
+// snapshot instead. Memory is bounded by the active calls plus the ring, whatever the viewer count.
+//
+// With wallboardPort set, on wallboardBind (loopback by default, like statsPort; 0.0.0.0 or a LAN address
+// lets supervisors on other machines connect — there is no authentication, so only on a trusted network):
+//   GET /wallboard         minimal HTML board (EventSource)
+//   GET /wallboard/calls   snapshot as JSON
+//   GET /wallboard/stream  text/event-stream: one "snapshot" event, then a delta per change
+// Console viewer: java Wallboard [http://127.0.0.1:<port>] (defaults to wallboardPort in the saved config)
+public final class Wallboard {
+    private static final int RING = 4096;
+    private static final int MAX_CALLS = 20_000;
+    private static final long HEARTBEAT_MILLIS = 15_000;
+
+    private static final ReentrantLock lock = new ReentrantLock();
+    private static final Condition changed = lock.newCondition();
+    private static final Map<String, Row> calls = new LinkedHashMap<>(); // guarded by lock, oldest first
+    private static final String[] ring = new String[RING];               // guarded by lock
+    private static long seq;                                             // guarded by lock
+    private static final AtomicInteger viewers = new AtomicInteger();
+
+    private static volatile boolean enabled;
+    private static HttpServer server;  // guarded by class lock
+    private static int serverPort;
+    private static String serverBind;
+
+    private Wallboard() {}
+
+    // Start/stop the wallboard endpoint to match the config; safe to call again on reload.
+    public static synchronized void configure(AppConfig cfg) {
+        int port = cfg.getWallboardPort();
+        String bind = cfg.getWallboardBind();
+        if (server != null && port == serverPort && bind.equals(serverBind)) return;
+        stop();
+        if (port <= 0) return;
+        try {
+            InetAddress addr = bind.isEmpty() ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+            HttpServer s = HttpServer.create(new InetSocketAddress(addr, port), 0);
+            s.createContext("/wallboard", Wallboard::handle);
+            s.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            s.start();
+            server = s;
+            serverPort = port;
+            serverBind = bind;
+            enabled = true;
+            if (!addr.isLoopbackAddress()) EventLog.info("Wallboard listening on {}:{} (reachable from other hosts)", addr.getHostAddress(), port);
+        } catch (IOException e) {
+            EventLog.log(EventLog.Level.WARN, "Wallboard not started on {}:{}: {}", bind, port, e.getMessage());
+        }
+    }
+
+    public static synchronized void stop() {
+        enabled = false;
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            serverPort = 0;
+            serverBind = null;
+        }
+        lock.lock();
+        try {
+            calls.clear();
+            changed.signalAll(); // streams notice the server is gone on their next write
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // A call reached a stage on an address; DISCONNECTED removes it.
+    public static void update(String callId, String stage, String caller, String e164, String name, String address, long now) {
+        if (!enabled) return;
+        if ("DISCONNECTED".equals(stage)) {
+            remove(callId);
+            return;
+        }
+        lock.lock();
+        try {
+            Row r = calls.get(callId);
+            if (r == null) {
+                // calls whose end was never seen must not pile up forever
+                if (calls.size() >= MAX_CALLS) {
+                    Iterator<Row> it = calls.values().iterator();
+                    publish(removeJson(it.next().callId));
+                    it.remove();
+                }
+                r = new Row(callId, now);
+                calls.put(callId, r);
+            }
+            r.stage = stage;
+            r.stageAt = now;
+            if (caller != null) r.caller = caller;
+            if (e164 != null) r.e164 = e164;
+            if (name != null) r.name = name;
+            // the line the call is at, never the calling party's own connection (CREATED in ALL mode)
+            if (address != null && !address.equalsIgnoreCase(r.caller)) r.address = address;
+            publish("{\"seq\":" + (seq + 1) + ",\"op\":\"upsert\",\"call\":" + r.toJson() + "}");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void remove(String callId) {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            if (calls.remove(callId) != null) publish(removeJson(callId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // For the GUI tooltip / CLI exit.
+    public static List<String> stats() {
+        if (!enabled) return Collections.emptyList();
+        lock.lock();
+        try {
+            return Collections.singletonList("wallboard port=" + serverPort + " calls=" + calls.size()
+                + " viewers=" + viewers.get() + " seq=" + seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static String snapshotJson() {
+        lock.lock();
+        try {
+            return snapshotLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String snapshotLocked() {
+        StringBuilder sb = new StringBuilder("{\"seq\":").append(seq).append(",\"op\":\"snapshot\",\"calls\":[");
+        boolean first = true;
+        for (Row r : calls.values()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(r.toJson());
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String removeJson(String callId) {
+        StringBuilder sb = new StringBuilder("{\"seq\":").append(seq + 1).append(",\"op\":\"remove\",\"callId\":");
+        WebhookDispatcher.quote(sb, callId);
+        return sb.append('}').toString();
+    }
+
+    private static void publish(String delta) { // lock held
+        seq++;
+        ring[(int) (seq % RING)] = delta;
+        changed.signalAll();
+    }
+
+    private static void handle(HttpExchange ex) throws IOException {
+        try {
+            if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            String path = ex.getRequestURI().getPath();
+            if (path.endsWith("/stream")) stream(ex);
+            else if (path.endsWith("/calls")) send(ex, "application/json", snapshotJson());
+            else send(ex, "text/html; charset=utf-8", PAGE);
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static void send(HttpExchange ex, String type, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // One virtual thread per viewer, following the shared ring until the viewer disconnects.
+    private static void stream(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0);
+        viewers.incrementAndGet();
+        try (OutputStream out = ex.getResponseBody()) {
+            long cursor = -1; // -1: next write is a snapshot
+            StringBuilder batch = new StringBuilder();
+            while (enabled) {
+                lock.lock();
+                try {
+                    if (cursor >= 0 && cursor == seq) changed.await(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (cursor < 0 || seq - cursor > RING) {
+                        batch.append("event: snapshot\ndata: ").append(snapshotLocked()).append("\n\n");
+                    } else {
+                        for (long s = cursor + 1; s <= seq; s++) batch.append("data: ").append(ring[(int) (s % RING)]).append("\n\n");
+                    }
+                    cursor = seq;
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+                if (batch.length() == 0) batch.append(":\n\n"); // heartbeat keeps proxies from timing out
+                out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                batch.setLength(0);
+            }
+        } catch (IOException gone) {
+            // viewer closed the connection
+        } finally {
+            viewers.decrementAndGet();
+        }
+    }
+
+    private static final class Row {
+        final String callId;
+        final long since;
+        String stage;
+        long stageAt;
+        String caller;
+        String e164;
+        String name;
+        String address;
+
+        Row(String callId, long since) {
+            this.callId = callId;
+            this.since = since;
+        }
+
+        String toJson() {
+            StringBuilder sb = new StringBuilder("{\"callId\":");
+            WebhookDispatcher.quote(sb, callId);
+            field(sb, "stage", stage);
+            field(sb, "caller", caller);
+            field(sb, "e164", e164);
+            field(sb, "name", name);
+            field(sb, "address", address);
+            return sb.append(",\"since\":").append(since).append(",\"stageAt\":").append(stageAt).append('}').toString();
+        }
+
+        private static void field(StringBuilder sb, String key, String value) {
+            if (value == null) return;
+            sb.append(",\"").append(key).append("\":");
+            WebhookDispatcher.quote(sb, value);
+        }
+    }
+
+    private static final String PAGE = "<!doctype html><html><head><meta charset=utf-8><title>Wallboard</title>"
+        + "<style>body{font:14px sans-serif;margin:1em}table{border-collapse:collapse;width:100%}"
+        + "td,th{border-bottom:1px solid #ddd;padding:4px 8px;text-align:left}.CONNECTED{color:#198754}"
+        + ".RINGING,.ALERTING{color:#dc3545}</style></head><body><h3>Active calls <span id=n></span></h3>"
+        + "<table><thead><tr><th>Address<th>Caller<th>Name<th>Stage<th>For</tr></thead><tbody id=b></tbody></table>"
+        // caller name and number come from outside (SIP trunks), so cells are text nodes, never markup
+        + "<script>var calls={};function cell(tr,t,cls){var td=document.createElement('td');td.textContent=t;"
+        + "if(cls)td.className=cls;tr.appendChild(td);}"
+        + "function row(c){var s=Math.round((Date.now()-c.stageAt)/1000),tr=document.createElement('tr');"
+        + "cell(tr,c.address||'');cell(tr,c.e164||c.caller||'');cell(tr,c.name||'');cell(tr,c.stage||'',c.stage);"
+        + "cell(tr,s+'s');return tr;}"
+        + "function draw(){var v=Object.values(calls).sort(function(a,b){return (a.address||'')<(b.address||'')?-1:1;});"
+        + "var b=document.getElementById('b');b.textContent='';v.forEach(function(c){b.appendChild(row(c));});"
+        + "document.getElementById('n').textContent='('+v.length+')';}"
+        + "var es=new EventSource('/wallboard/stream');"
+        + "es.addEventListener('snapshot',function(e){calls={};JSON.parse(e.data).calls.forEach(function(c){calls[c.callId]=c;});draw();});"
+        + "es.onmessage=function(e){var d=JSON.parse(e.data);if(d.op=='remove')delete calls[d.callId];else calls[d.call.callId]=d.call;draw();};"
+        + "setInterval(draw,1000);</script></body></html>";
+
+    // Console viewer: prints the snapshot, then one line per change.
+    public static void main(String[] args) throws Exception {
+        String base;
+        if (args.length > 0) {
+            base = args[0];
+        } else {
+            ConfigStore store = new ConfigStore(ConfigStore.DEFAULT_FILE);
+            store.load();
+            base = "http://127.0.0.1:" + store.get().getWallboardPort();
+        }
+        if (base.endsWith("/")) base = base.substring(0, base.length() - 1);
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest req = HttpRequest.newBuilder(URI.create(base + "/wallboard/stream")).GET().build();
+        HttpResponse<java.util.stream.Stream<String>> resp = client.send(req, HttpResponse.BodyHandlers.ofLines());
+        if (resp.statusCode() != 200) {
+            System.out.println("Wallboard at " + base + " returned HTTP " + resp.statusCode());
+            return;
+        }
+        resp.body().forEach(line -> {
+            if (!line.startsWith("data: ")) return;
+            String json = line.substring(6);
+            String time = LocalTime.ofInstant(Instant.now(), ZoneId.systemDefault()).withNano(0).toString();
+            if (json.contains("\"op\":\"snapshot\"")) System.out.println(time + " snapshot " + json);
+            else System.out.println(time + " " + json);
+        });
+    }
+}
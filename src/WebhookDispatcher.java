@@ -0,0 +1,416 @@
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Outbound webhook delivery for integrations that cannot use a browser pop (ticketing, WFM).
+// Pop and call-lifecycle events are POSTed as JSON arrays to each configured endpoint.
+//
+// Per endpoint: publish() only enqueues in memory (cheap on the JTAPI observer thread); a worker thread
+// appends new events to an on-disk journal, sends them in micro-batches (webhookBatchSize events or
+// webhookBatchMillis, whichever first) and retries with exponential backoff. The journal plus an acked
+// byte offset lets undelivered events survive endpoint outages and app restarts. A 4xx other than 408/429
+// means the batch itself is bad, so it is written to a dead-letter file and skipped instead of retried. The
+// delivered prefix of the journal is cut off once it passes MAX_JOURNAL_ACKED_BYTES, so the journal stays
+// bounded by queueCapacity events during a long outage.
+public final class WebhookDispatcher {
+    private static final Path QUEUE_DIR = ConfigStore.DEFAULT_DIR.resolve("webhook-queue");
+    private static final long MAX_BACKOFF_MILLIS = 60_000L;
+    private static final long MAX_JOURNAL_ACKED_BYTES = 1L << 20;
+    private static final long MAX_DEAD_LETTER_BYTES = 4L << 20;
+    private static final Duration SHUTDOWN_WAIT = Duration.ofSeconds(5);
+
+    private static final Map<String, Endpoint> endpoints = new LinkedHashMap<>(); // guarded by class lock
+    // what publish() reads on the observer thread: a copy of endpoints.values(), replaced on every change
+    private static volatile Endpoint[] active = new Endpoint[0];
+    private static HttpClient client;
+
+    private WebhookDispatcher() {}
+
+    // Start/stop endpoint workers to match the config; safe to call again on reload.
+    public static synchronized void configure(AppConfig cfg) {
+        Set<String> wanted = new LinkedHashSet<>(cfg.getWebhooks());
+        for (Iterator<Map.Entry<String, Endpoint>> it = endpoints.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Endpoint> e = it.next();
+            if (!wanted.contains(e.getKey())) {
+                e.getValue().stop();
+                it.remove();
+            }
+        }
+        for (String url : wanted) {
+            Endpoint ep = endpoints.get(url);
+            if (ep == null) {
+                if (client == null) {
+                    // one client for all endpoints: HTTP/2 where the server offers it, connections are reused
+                    client = HttpClient.newBuilder()
+                        .executor(java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor())
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .build();
+                    // covers the GUI window close and System.exit as well as the CLI's explicit shutdown()
+                    Runtime.getRuntime().addShutdownHook(new Thread(WebhookDispatcher::shutdown, "webhook-shutdown"));
+                }
+                ep = new Endpoint(url);
+                endpoints.put(url, ep);
+                ep.start();
+            }
+            ep.batchSize = cfg.getWebhookBatchSize();
+            ep.batchMillis = cfg.getWebhookBatchMillis();
+            ep.capacity = cfg.getQueueCapacity();
+        }
+        active = endpoints.values().toArray(new Endpoint[0]);
+    }
+
+    public static boolean isEnabled() {
+        return active.length > 0;
+    }
+
+    // Stop every worker and wait (bounded) for each to journal what is still in memory.
+    public static synchronized void shutdown() {
+        active = new Endpoint[0];
+        for (Endpoint ep : endpoints.values()) ep.stop();
+        long end = System.nanoTime() + SHUTDOWN_WAIT.toNanos();
+        for (Endpoint ep : endpoints.values()) ep.join(Math.max(0, end - System.nanoTime()));
+        endpoints.clear();
+    }
+
+    // Queue one event (a JSON object) for every endpoint.
+    public static void publish(String json) {
+        Endpoint[] targets = active;
+        if (targets.length == 0) return;
+        long now = System.currentTimeMillis();
+        for (Endpoint ep : targets) ep.offer(json, now);
+    }
+
+    // Per-endpoint queue depth and delivery latency, one line per endpoint.
+    public static synchronized List<String> stats() {
+        List<String> out = new ArrayList<>();
+        for (Endpoint ep : endpoints.values()) out.add(ep.stats());
+        return out;
+    }
+
+    // Build a JSON object from alternating key/value pairs; null values are written as null.
+    public static String json(String... kv) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i + 1 < kv.length; i += 2) {
+            if (i > 0) sb.append(',');
+            quote(sb, kv[i]);
+            sb.append(':');
+            if (kv[i + 1] == null) sb.append("null");
+            else quote(sb, kv[i + 1]);
+        }
+        return sb.append('}').toString();
+    }
+
+    static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private enum Result { DELIVERED, REJECTED, RETRY }
+
+    private static final class Pending {
+        final String json;
+        final long enqueuedAt;
+        final int bytes; // journal line length including '\n'
+
+        Pending(String json, long enqueuedAt) {
+            this.json = json;
+            this.enqueuedAt = enqueuedAt;
+            this.bytes = json.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+    }
+
+    private static final class Endpoint {
+        final String url;
+        final Path journal;
+        final Path offsetFile;
+        final Path deadLetters;
+        final ConcurrentLinkedQueue<Pending> inbox = new ConcurrentLinkedQueue<>();
+        final ArrayDeque<Pending> pending = new ArrayDeque<>(); // worker thread only
+        volatile int batchSize = 50;
+        volatile long batchMillis = 500;
+        volatile int capacity = 1000;
+        volatile boolean running;
+        Thread worker;
+        long ackedOffset;   // bytes of the journal already delivered (or dropped)
+
+        // stats
+        volatile int depth;
+        volatile long delivered;
+        volatile long dropped;
+        volatile long rejected;
+        volatile long failures;
+        volatile long lastLatencyMillis;
+        volatile double avgLatencyMillis;
+        volatile String lastError;
+
+        Endpoint(String url) {
+            this.url = url;
+            String id = Integer.toHexString(url.hashCode());
+            this.journal = QUEUE_DIR.resolve(id + ".jsonl");
+            this.offsetFile = QUEUE_DIR.resolve(id + ".offset");
+            this.deadLetters = QUEUE_DIR.resolve(id + ".rejected.jsonl");
+        }
+
+        void offer(String json, long now) {
+            inbox.add(new Pending(json, now));
+            Thread w = worker;
+            if (w != null) java.util.concurrent.locks.LockSupport.unpark(w);
+        }
+
+        void start() {
+            running = true;
+            worker = TaskScope.startVirtual("webhook-" + Integer.toHexString(url.hashCode()), this::run);
+        }
+
+        void stop() {
+            running = false;
+            Thread w = worker;
+            if (w != null) w.interrupt();
+        }
+
+        void join(long nanos) {
+            Thread w = worker;
+            if (w == null) return;
+            try {
+                if (!w.join(Duration.ofNanos(nanos))) EventLog.warn("Webhook worker for {} did not stop in time", url);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        String stats() {
+            return "webhook " + url + " depth=" + depth + " delivered=" + delivered + " dropped=" + dropped
+                + " rejected=" + rejected + " failures=" + failures + " lastLatencyMs=" + lastLatencyMillis
+                + " avgLatencyMs=" + Math.round(avgLatencyMillis)
+                + (lastError != null ? " lastError=" + lastError : "");
+        }
+
+        private void run() {
+            try {
+                recover();
+            } catch (IOException e) {
+                lastError = "journal recovery failed: " + e.getMessage();
+            }
+            long backoff = 0;
+            long nextAttempt = 0;
+            while (running) {
+                try {
+                    drainInbox();
+                    depth = pending.size();
+                    long now = System.currentTimeMillis();
+                    long wait;
+                    if (pending.isEmpty()) {
+                        wait = 1000;
+                    } else if (now < nextAttempt) {
+                        wait = nextAttempt - now;          // backing off after a failure
+                    } else if (pending.size() < batchSize && now - pending.peekFirst().enqueuedAt < batchMillis) {
+                        wait = batchMillis - (now - pending.peekFirst().enqueuedAt); // let the batch fill
+                    } else {
+                        if (send() != Result.RETRY) {
+                            backoff = 0;
+                            nextAttempt = 0;
+                        } else {
+                            failures++;
+                            backoff = backoff == 0 ? 1000 : Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+                            nextAttempt = System.currentTimeMillis() + backoff + ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+                        }
+                        continue;
+                    }
+                    java.util.concurrent.locks.LockSupport.parkNanos(wait * 1_000_000L);
+                    if (Thread.interrupted() && !running) break;
+                } catch (Exception e) {
+                    lastError = e.getMessage();
+                }
+            }
+            // journal anything still in memory so the next start delivers it; clear the stop interrupt
+            // first, since the journal stream is an interruptible channel
+            Thread.interrupted();
+            try {
+                drainInbox();
+            } catch (IOException e) {
+                lastError = e.getMessage();
+            }
+        }
+
+        // Reload events that were journaled but not acknowledged before the last shutdown.
+        private void recover() throws IOException {
+            Files.createDirectories(QUEUE_DIR);
+            if (Files.exists(offsetFile)) {
+                try {
+                    ackedOffset = Long.parseLong(new String(Files.readAllBytes(offsetFile), StandardCharsets.US_ASCII).trim());
+                } catch (NumberFormatException e) {
+                    ackedOffset = 0;
+                }
+            }
+            if (!Files.exists(journal)) {
+                ackedOffset = 0;
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (ackedOffset > Files.size(journal)) ackedOffset = 0;
+            try (InputStream in = Files.newInputStream(journal)) {
+                in.skipNBytes(ackedOffset);
+                BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (!line.isEmpty()) pending.add(new Pending(line, now));
+                }
+            }
+            trimToCapacity();
+        }
+
+        // Move newly published events to the journal (one append per drain) and the pending queue.
+        private void drainInbox() throws IOException {
+            if (inbox.isEmpty()) return;
+            List<Pending> batch = new ArrayList<>();
+            Pending p;
+            while ((p = inbox.poll()) != null) batch.add(p);
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                    Files.newOutputStream(journal, StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8))) {
+                for (Pending e : batch) {
+                    w.write(e.json);
+                    w.write('\n');
+                }
+            }
+            pending.addAll(batch);
+            trimToCapacity();
+        }
+
+        // Bounded: beyond capacity the oldest events are dropped (and counted) rather than growing forever.
+        private void trimToCapacity() throws IOException {
+            boolean changed = false;
+            while (pending.size() > capacity) {
+                ackedOffset += pending.pollFirst().bytes;
+                dropped++;
+                changed = true;
+            }
+            if (!changed) return;
+            if (ackedOffset >= MAX_JOURNAL_ACKED_BYTES) compactJournal();
+            writeOffset();
+        }
+
+        private Result send() {
+            int n = Math.min(batchSize, pending.size());
+            StringBuilder body = new StringBuilder("[");
+            Iterator<Pending> it = pending.iterator();
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                Pending p = it.next();
+                if (i > 0) body.append(',');
+                body.append(p.json);
+                oldest = Math.min(oldest, p.enqueuedAt);
+            }
+            body.append(']');
+            try {
+                HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                    .build();
+                HttpResponse<Void> resp = client.send(req, HttpResponse.BodyHandlers.discarding());
+                int status = resp.statusCode();
+                if (status / 100 != 2) {
+                    lastError = "HTTP " + status;
+                    // 408 and 429 are the server asking us to come back later; other 4xx will never succeed
+                    if (status / 100 != 4 || status == 408 || status == 429) return Result.RETRY;
+                    reject(body, n, status);
+                    return Result.REJECTED;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.RETRY;
+            } catch (Exception e) {
+                lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+                return Result.RETRY;
+            }
+            delivered += n;
+            long latency = System.currentTimeMillis() - oldest;
+            lastLatencyMillis = latency;
+            avgLatencyMillis = avgLatencyMillis == 0 ? latency : avgLatencyMillis * 0.9 + latency * 0.1;
+            lastError = null;
+            ack(n);
+            return Result.DELIVERED;
+        }
+
+        // Permanently refused batch: keep it in the dead-letter file for inspection and move past it.
+        private void reject(CharSequence body, int n, int status) {
+            rejected += n;
+            EventLog.log(EventLog.Level.WARN, "Webhook {} rejected a batch of {} events with HTTP {}; kept in {}", url, n, status, deadLetters);
+            try {
+                if (Files.exists(deadLetters) && Files.size(deadLetters) > MAX_DEAD_LETTER_BYTES) {
+                    Files.move(deadLetters, deadLetters.resolveSibling(deadLetters.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+                }
+                String line = "{\"rejectedAt\":\"" + now() + "\",\"status\":" + status + ",\"events\":" + body + "}\n";
+                Files.write(deadLetters, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                lastError = "failed to write dead letter: " + e.getMessage();
+            }
+            ack(n);
+        }
+
+        // The first n pending events are done with (delivered or rejected).
+        private void ack(int n) {
+            for (int i = 0; i < n; i++) ackedOffset += pending.pollFirst().bytes;
+            depth = pending.size();
+            try {
+                if (pending.isEmpty() && inbox.isEmpty()) {
+                    // everything delivered: compact the journal
+                    Files.deleteIfExists(journal);
+                    ackedOffset = 0;
+                } else if (ackedOffset >= MAX_JOURNAL_ACKED_BYTES) {
+                    compactJournal();
+                }
+                writeOffset();
+            } catch (IOException e) {
+                lastError = "failed to record delivery: " + e.getMessage();
+            }
+        }
+
+        // Rewrite the journal with only the pending events. The offset is reset first: a crash in between
+        // resends the already-acked prefix once (at-least-once) rather than skipping pending events.
+        private void compactJournal() throws IOException {
+            Path tmp = journal.resolveSibling(journal.getFileName() + ".tmp");
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Pending p : pending) {
+                    w.write(p.json);
+                    w.write('\n');
+                }
+            }
+            ackedOffset = 0;
+            writeOffset();
+            Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private void writeOffset() throws IOException {
+            Files.write(offsetFile, Long.toString(ackedOffset).getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    // ISO-8601 UTC timestamp for event payloads.
+    public static String now() {
+        return Instant.now().toString();
+    }
+}